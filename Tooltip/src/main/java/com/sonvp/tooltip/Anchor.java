@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2017 sonvp
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sonvp.tooltip;
+
+import android.graphics.Rect;
+import android.support.annotation.NonNull;
+import android.view.View;
+
+/**
+ * The region a tool tip points at: a view, or a virtual region (fixed or dynamic) inside a host
+ * view, such as a point of a chart drawn on a canvas.
+ * <p/>
+ * Virtual regions are given in the coordinates of their host view. The host view provides the
+ * window of the tool tip and the root for its overlay.
+ */
+public abstract class Anchor {
+
+    /**
+     * Supplies the bounds of a virtual anchor. Called every time the tool tip is placed, so a
+     * moving target only needs {@link Tooltip#updateAnchor()}.
+     */
+    public interface BoundsProvider {
+        /**
+         * Writes the bounds of the anchor, in coordinates of the host view, into outRect.
+         */
+        void getBounds(@NonNull View hostView, @NonNull Rect outRect);
+    }
+
+    final int[] location = new int[2];
+
+    Anchor() {
+    }
+
+    /**
+     * Creates an anchor for a view.
+     */
+    public static Anchor of(@NonNull View view) {
+        return new ViewAnchor(view);
+    }
+
+    /**
+     * Creates an anchor for a fixed region of a host view.
+     */
+    public static Anchor of(@NonNull View hostView, @NonNull Rect bounds) {
+        return new RectAnchor(hostView, bounds);
+    }
+
+    /**
+     * Creates an anchor for a region of a host view that may move.
+     */
+    public static Anchor of(@NonNull View hostView, @NonNull BoundsProvider provider) {
+        return new ProviderAnchor(hostView, provider);
+    }
+
+    /**
+     * Returns the view anchoring the tool tip, or hosting the virtual region.
+     */
+    @NonNull
+    public abstract View getView();
+
+    /**
+     * Writes the bounds of the anchor, in screen coordinates, into outRect.
+     */
+    public abstract void getBounds(@NonNull Rect outRect);
+
+    /**
+     * Whether the anchor is the whole view returned by {@link #getView()}.
+     */
+    boolean isViewAnchor() {
+        return false;
+    }
+
+    private static final class ViewAnchor extends Anchor {
+
+        private final View view;
+
+        ViewAnchor(View view) {
+            this.view = view;
+        }
+
+        @NonNull
+        @Override
+        public View getView() {
+            return view;
+        }
+
+        @Override
+        public void getBounds(@NonNull Rect outRect) {
+            view.getLocationOnScreen(location);
+            outRect.set(location[0], location[1],
+                    location[0] + view.getWidth(), location[1] + view.getHeight());
+        }
+
+        @Override
+        boolean isViewAnchor() {
+            return true;
+        }
+    }
+
+    private static final class RectAnchor extends Anchor {
+
+        private final View hostView;
+        private final Rect bounds;
+
+        RectAnchor(View hostView, Rect bounds) {
+            this.hostView = hostView;
+            this.bounds = new Rect(bounds);
+        }
+
+        @NonNull
+        @Override
+        public View getView() {
+            return hostView;
+        }
+
+        @Override
+        public void getBounds(@NonNull Rect outRect) {
+            hostView.getLocationOnScreen(location);
+            outRect.set(bounds);
+            outRect.offset(location[0], location[1]);
+        }
+    }
+
+    private static final class ProviderAnchor extends Anchor {
+
+        private final View hostView;
+        private final BoundsProvider provider;
+
+        ProviderAnchor(View hostView, BoundsProvider provider) {
+            this.hostView = hostView;
+            this.provider = provider;
+        }
+
+        @NonNull
+        @Override
+        public View getView() {
+            return hostView;
+        }
+
+        @Override
+        public void getBounds(@NonNull Rect outRect) {
+            provider.getBounds(hostView, outRect);
+            hostView.getLocationOnScreen(location);
+            outRect.offset(location[0], location[1]);
+        }
+    }
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright (C) 2017 sonvp
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sonvp.tooltip;
+
+import android.graphics.Rect;
+import android.support.annotation.NonNull;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+import android.view.View;
+
+/**
+ * Uniform grid over the tap targets of a custom-drawn view (chart points, map pins, ...), to find
+ * the target under a touch without scanning all of them.
+ * <p/>
+ * Targets are identified by a non-negative id and given in coordinates of the host view. They can
+ * be added, moved and removed at any time; a lookup only visits the targets of the grid cells
+ * around the touch. Empty targets, e.g. a point or a line of a chart, are hit as if they were one
+ * pixel wide and high.
+ */
+public final class AnchorIndex {
+
+    /**
+     * Returned by {@link #find(int, int, int)} when no target is under the touch.
+     */
+    public static final int NO_TARGET = -1;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int cellSize;
+
+    // target bounds, by slot
+    private int[] ids = new int[INITIAL_CAPACITY];
+    private int[] lefts = new int[INITIAL_CAPACITY];
+    private int[] tops = new int[INITIAL_CAPACITY];
+    private int[] rights = new int[INITIAL_CAPACITY];
+    private int[] bottoms = new int[INITIAL_CAPACITY];
+    private int slotCount;
+
+    // freed slots, reused before growing
+    private int[] freeSlots = new int[INITIAL_CAPACITY];
+    private int freeCount;
+
+    // id -> slot
+    private final SparseIntArray slotsById = new SparseIntArray();
+
+    // cell key -> slots, cell[0] being the number of slots
+    private final SparseArray<int[]> cells = new SparseArray<int[]>();
+
+    /**
+     * @param cellSize size in pixel of a grid cell, about the size of a typical target
+     */
+    public AnchorIndex(int cellSize) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("Cell size must be positive - " + cellSize);
+        }
+        this.cellSize = cellSize;
+    }
+
+    /**
+     * Returns the number of targets.
+     */
+    public int size() {
+        return slotsById.size();
+    }
+
+    /**
+     * Adds a target, or moves it if the id is already indexed.
+     */
+    public void put(int id, @NonNull Rect bounds) {
+        put(id, bounds.left, bounds.top, bounds.right, bounds.bottom);
+    }
+
+    /**
+     * Adds a target, or moves it if the id is already indexed.
+     */
+    public void put(int id, int left, int top, int right, int bottom) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Unsupported target id - " + id);
+        }
+        int slot = slotsById.get(id, -1);
+        if (slot >= 0) {
+            if (lefts[slot] == left && tops[slot] == top && rights[slot] == right && bottoms[slot] == bottom) {
+                return;
+            }
+            unlink(slot);
+        } else {
+            slot = obtainSlot();
+            slotsById.put(id, slot);
+        }
+        ids[slot] = id;
+        lefts[slot] = left;
+        tops[slot] = top;
+        rights[slot] = right;
+        bottoms[slot] = bottom;
+        link(slot);
+    }
+
+    /**
+     * Removes a target. Does nothing if the id is not indexed.
+     */
+    public void remove(int id) {
+        int slot = slotsById.get(id, -1);
+        if (slot < 0) {
+            return;
+        }
+        unlink(slot);
+        slotsById.delete(id);
+        if (freeCount == freeSlots.length) {
+            freeSlots = grow(freeSlots);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    /**
+     * Removes all targets.
+     */
+    public void clear() {
+        slotsById.clear();
+        cells.clear();
+        slotCount = 0;
+        freeCount = 0;
+    }
+
+    /**
+     * Writes the bounds of a target into outRect.
+     *
+     * @return false if the id is not indexed
+     */
+    public boolean getBounds(int id, @NonNull Rect outRect) {
+        int slot = slotsById.get(id, -1);
+        if (slot < 0) {
+            return false;
+        }
+        outRect.set(lefts[slot], tops[slot], rights[slot], bottoms[slot]);
+        return true;
+    }
+
+    /**
+     * Finds the target under a touch. When several targets match, the one whose center is the
+     * closest to the touch wins.
+     *
+     * @param slop extra distance in pixel around each target that still counts as a hit
+     * @return the id of the target, or {@link #NO_TARGET}
+     */
+    public int find(int x, int y, int slop) {
+        int found = NO_TARGET;
+        long foundDistance = Long.MAX_VALUE;
+
+        int fromCellX = cell(x - slop);
+        int toCellX = cell(x + slop);
+        int fromCellY = cell(y - slop);
+        int toCellY = cell(y + slop);
+        for (int cellX = fromCellX; cellX <= toCellX; cellX++) {
+            for (int cellY = fromCellY; cellY <= toCellY; cellY++) {
+                int[] cell = cells.get(key(cellX, cellY));
+                if (cell == null) {
+                    continue;
+                }
+                for (int i = 1, count = cell[0]; i <= count; i++) {
+                    int slot = cell[i];
+                    if (x < lefts[slot] - slop || x >= right(slot) + slop
+                            || y < tops[slot] - slop || y >= bottom(slot) + slop) {
+                        continue;
+                    }
+                    long dx = 2L * x - lefts[slot] - rights[slot];
+                    long dy = 2L * y - tops[slot] - bottoms[slot];
+                    long distance = dx * dx + dy * dy;
+                    if (distance < foundDistance) {
+                        foundDistance = distance;
+                        found = ids[slot];
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Creates an anchor that follows a target of this index: after {@link #put(int, int, int, int, int)}
+     * moves the target, {@link Tooltip#updateAnchor()} moves the tool tip along.
+     */
+    public Anchor anchorFor(@NonNull View hostView, final int id) {
+        return Anchor.of(hostView, new Anchor.BoundsProvider() {
+            @Override
+            public void getBounds(@NonNull View view, @NonNull Rect outRect) {
+                if (!AnchorIndex.this.getBounds(id, outRect)) {
+                    outRect.setEmpty();
+                }
+            }
+        });
+    }
+
+    private int obtainSlot() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        if (slotCount == ids.length) {
+            ids = grow(ids);
+            lefts = grow(lefts);
+            tops = grow(tops);
+            rights = grow(rights);
+            bottoms = grow(bottoms);
+        }
+        return slotCount++;
+    }
+
+    private void link(int slot) {
+        for (int cellX = cell(lefts[slot]), toX = cell(right(slot) - 1); cellX <= toX; cellX++) {
+            for (int cellY = cell(tops[slot]), toY = cell(bottom(slot) - 1); cellY <= toY; cellY++) {
+                int key = key(cellX, cellY);
+                int[] cell = cells.get(key);
+                if (cell == null) {
+                    cell = new int[5];
+                    cells.put(key, cell);
+                } else if (cell[0] + 1 == cell.length) {
+                    cell = grow(cell);
+                    cells.put(key, cell);
+                }
+                cell[++cell[0]] = slot;
+            }
+        }
+    }
+
+    private void unlink(int slot) {
+        for (int cellX = cell(lefts[slot]), toX = cell(right(slot) - 1); cellX <= toX; cellX++) {
+            for (int cellY = cell(tops[slot]), toY = cell(bottom(slot) - 1); cellY <= toY; cellY++) {
+                int key = key(cellX, cellY);
+                int[] cell = cells.get(key);
+                if (cell == null) {
+                    continue;
+                }
+                for (int i = 1, count = cell[0]; i <= count; i++) {
+                    if (cell[i] == slot) {
+                        // swap with the last one, order does not matter
+                        cell[i] = cell[count];
+                        cell[0]--;
+                        break;
+                    }
+                }
+                if (cell[0] == 0) {
+                    // targets moving around would otherwise leave a trail of empty cells
+                    cells.delete(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Right edge of a target, one pixel right of its left edge at least.
+     */
+    private int right(int slot) {
+        return Math.max(rights[slot], lefts[slot] + 1);
+    }
+
+    /**
+     * Bottom edge of a target, one pixel below its top edge at least.
+     */
+    private int bottom(int slot) {
+        return Math.max(bottoms[slot], tops[slot] + 1);
+    }
+
+    /**
+     * Returns the number of grid cells holding targets.
+     */
+    int getCellCount() {
+        return cells.size();
+    }
+
+    private int cell(int coordinate) {
+        // floor division, targets may start left of or above the host view
+        return coordinate >= 0 ? coordinate / cellSize : (coordinate - cellSize + 1) / cellSize;
+    }
+
+    private static int key(int cellX, int cellY) {
+        // cells wrap around after 65536 in each direction, a collision only adds candidates
+        return (cellX << 16) | (cellY & 0xFFFF);
+    }
+
+    private static int[] grow(int[] array) {
+        int[] grown = new int[array.length * 2];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+}
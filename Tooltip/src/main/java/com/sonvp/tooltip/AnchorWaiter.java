@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2017 sonvp
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sonvp.tooltip;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v4.view.ViewCompat;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+/**
+ * Waits for a view to be attached to a window and laid out with a size, for
+ * {@link Tooltip#showWhenReady(long, Tooltip.OnShowTimeoutListener)}. Listens for the attach,
+ * then for the next global layout, each listener removed as soon as it has fired, and reports on
+ * the following animation frame.
+ */
+final class AnchorWaiter implements View.OnAttachStateChangeListener, ViewTreeObserver.OnGlobalLayoutListener {
+
+    interface Callback {
+        void onAnchorReady();
+
+        void onAnchorTimeout();
+    }
+
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final View view;
+    private final Callback callback;
+    private ViewTreeObserver observer;
+    private boolean done = false;
+
+    private final Runnable ready = new Runnable() {
+        @Override
+        public void run() {
+            if (done) {
+                return;
+            }
+            if (!isReady(view)) {
+                // detached or collapsed since the layout
+                start();
+                return;
+            }
+            finish();
+            callback.onAnchorReady();
+        }
+    };
+
+    private final Runnable timeout = new Runnable() {
+        @Override
+        public void run() {
+            if (done) {
+                return;
+            }
+            finish();
+            callback.onAnchorTimeout();
+        }
+    };
+
+    AnchorWaiter(View view, Callback callback) {
+        this.view = view;
+        this.callback = callback;
+    }
+
+    /**
+     * Whether the view has a window token and a laid out size.
+     */
+    static boolean isReady(View view) {
+        return view.getWindowToken() != null && ViewCompat.isLaidOut(view)
+                && view.getWidth() > 0 && view.getHeight() > 0;
+    }
+
+    /**
+     * @param timeoutMillis how long to wait, 0 for no limit
+     */
+    void start(long timeoutMillis) {
+        if (timeoutMillis > 0L) {
+            mainHandler.postDelayed(timeout, timeoutMillis);
+        }
+        start();
+    }
+
+    void cancel() {
+        finish();
+    }
+
+    private void start() {
+        if (view.getWindowToken() == null) {
+            view.addOnAttachStateChangeListener(this);
+        } else {
+            waitForLayout();
+        }
+    }
+
+    private void waitForLayout() {
+        removeLayoutListener();
+        observer = view.getViewTreeObserver();
+        observer.addOnGlobalLayoutListener(this);
+    }
+
+    @Override
+    public void onViewAttachedToWindow(View v) {
+        view.removeOnAttachStateChangeListener(this);
+        waitForLayout();
+    }
+
+    @Override
+    public void onViewDetachedFromWindow(View v) {
+        // do nothing
+    }
+
+    @Override
+    public void onGlobalLayout() {
+        if (isReady(view)) {
+            removeLayoutListener();
+            ViewCompat.postOnAnimation(view, ready);
+        }
+    }
+
+    private void finish() {
+        done = true;
+        mainHandler.removeCallbacks(timeout);
+        view.removeOnAttachStateChangeListener(this);
+        view.removeCallbacks(ready);
+        removeLayoutListener();
+    }
+
+    @SuppressWarnings("deprecation")
+    private void removeLayoutListener() {
+        if (observer == null) {
+            return;
+        }
+        // an observer that is no longer alive was merged into the one of the window
+        ViewTreeObserver alive = observer.isAlive() ? observer : view.getViewTreeObserver();
+        alive.removeGlobalOnLayoutListener(this);
+        observer = null;
+    }
+}
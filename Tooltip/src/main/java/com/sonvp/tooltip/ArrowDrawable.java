@@ -24,16 +24,23 @@
 
 package com.sonvp.tooltip;
 
+import android.annotation.TargetApi;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.ColorFilter;
+import android.graphics.Outline;
 import android.graphics.Paint;
 import android.graphics.Path;
 import android.graphics.PixelFormat;
 import android.graphics.Rect;
 import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
 import android.support.annotation.ColorInt;
 import android.view.Gravity;
+import android.view.View;
+import android.view.ViewOutlineProvider;
+import android.widget.ImageView;
 
 /**
  * Implementation arrow drawable for tooltip
@@ -101,13 +108,35 @@ final class ArrowDrawable extends ColorDrawable {
         canvas.drawPath(mPath, mPaint);
     }
 
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    @Override
+    public void getOutline(Outline outline) {
+        if (mPath == null) {
+            updatePath(getBounds());
+        }
+        if (mPath.isConvex()) {
+            outline.setConvexPath(mPath);
+            outline.setAlpha(Color.alpha(mPaint.getColor()) / 255.0F);
+        } else {
+            super.getOutline(outline);
+        }
+    }
+
     @Override
     public void setAlpha(int alpha) {
         mPaint.setAlpha(alpha);
     }
 
+    @ColorInt
+    public int getColor() {
+        return mPaint.getColor();
+    }
+
     public void setColor(@ColorInt int color) {
-        mPaint.setColor(color);
+        if (mPaint.getColor() != color) {
+            mPaint.setColor(color);
+            invalidateSelf();
+        }
     }
 
     @Override
@@ -131,6 +160,24 @@ final class ArrowDrawable extends ColorDrawable {
     }
 
 
+    /**
+     * Outline of an {@link ImageView} taken from its drawable rather than its background, so
+     * that the arrow casts a triangular shadow.
+     */
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    static final class ImageOutlineProvider extends ViewOutlineProvider {
+
+        @Override
+        public void getOutline(View view, Outline outline) {
+            Drawable drawable = ((ImageView) view).getDrawable();
+            if (drawable != null) {
+                drawable.getOutline(outline);
+            } else {
+                outline.setEmpty();
+            }
+        }
+    }
+
     public static int gravityToArrowDirection(int gravity) {
         switch (gravity) {
             case Gravity.LEFT:
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2017 sonvp
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sonvp.tooltip;
+
+import android.text.TextPaint;
+import android.text.TextUtils;
+
+/**
+ * Finds the narrowest text width that keeps the line count the text has at its maximum width,
+ * so that side tool tips get compact bubbles instead of one wide line over a short last one.
+ * <p/>
+ * Each pass breaks the text greedily at spaces with {@link TextPaint#breakText}, without building
+ * a layout and without allocating. The first pass counts the lines at the maximum width, the
+ * others binary-search the width, and there are at most {@link #MAX_PASSES} of them. The width
+ * found is an estimate for text with spans, which the caller checks against the actual layout.
+ */
+final class BalancedWrap {
+
+    static final int MAX_PASSES = 6;
+
+    private int passCount;
+    private int lineCount;
+
+    /**
+     * @return the balanced text width, at most maxWidth
+     */
+    int balance(CharSequence text, TextPaint paint, int maxWidth) {
+        passCount = 0;
+        lineCount = countLines(text, paint, maxWidth, Integer.MAX_VALUE);
+        if (lineCount <= 1) {
+            return maxWidth;
+        }
+
+        // below the average line width, minus a space per line, the text needs more lines
+        float totalWidth = paint.measureText(text, 0, text.length());
+        int low = Math.max(0, (int) ((totalWidth - lineCount * paint.measureText(" ")) / lineCount) - 1);
+        int high = maxWidth;
+        while (passCount < MAX_PASSES && high - low > 1) {
+            int middle = (low + high) >>> 1;
+            if (countLines(text, paint, middle, lineCount) <= lineCount) {
+                high = middle;
+            } else {
+                low = middle;
+            }
+        }
+        return high;
+    }
+
+    /**
+     * Returns the number of line breaking passes of the last {@link #balance}.
+     */
+    int getPassCount() {
+        return passCount;
+    }
+
+    /**
+     * Returns the line count the last {@link #balance} kept.
+     */
+    int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Counts the lines of the text broken at the given width, up to limit + 1.
+     */
+    int countLines(CharSequence text, TextPaint paint, int width, int limit) {
+        passCount++;
+        int lines = 0;
+        int length = text.length();
+        int start = 0;
+        while (start <= length) {
+            int paragraphEnd = TextUtils.indexOf(text, '\n', start);
+            if (paragraphEnd < 0) {
+                paragraphEnd = length;
+            }
+            int position = start;
+            do {
+                int next = position + paint.breakText(text, position, paragraphEnd, true, width, null);
+                if (next < paragraphEnd && text.charAt(next) != ' '
+                        && (next == position || text.charAt(next - 1) != ' ')) {
+                    // in the middle of a word, go back to the last space, or break the word
+                    int space = next - 1;
+                    while (space >= position && text.charAt(space) != ' ') {
+                        space--;
+                    }
+                    next = space >= position ? space + 1 : Math.max(next, position + 1);
+                }
+                // spaces hang at the end of the line
+                while (next < paragraphEnd && text.charAt(next) == ' ') {
+                    next++;
+                }
+                lines++;
+                if (lines > limit) {
+                    return lines;
+                }
+                position = next;
+            } while (position < paragraphEnd);
+            start = paragraphEnd + 1;
+        }
+        return lines;
+    }
+}
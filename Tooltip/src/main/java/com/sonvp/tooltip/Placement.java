@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2017 sonvp
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sonvp.tooltip;
+
+import android.graphics.Rect;
+import android.view.Gravity;
+
+/**
+ * Popup geometry for a tooltip. Inputs and results are plain fields so that repositioning
+ * never allocates; one instance is owned by each {@link Tooltip}.
+ */
+final class Placement {
+
+    int displayWidth;
+    int displayHeight;
+    int displayTop;
+
+    int anchorLeft;
+    int anchorTop;
+    int anchorWidth;
+    int anchorHeight;
+
+    /**
+     * Popup position on screen.
+     */
+    int x;
+    int y;
+
+    /**
+     * Left margin of the arrow for Gravity.TOP/BOTTOM, top margin for Gravity.LEFT/RIGHT.
+     */
+    int arrowMargin;
+
+    /**
+     * Max width of the text content for Gravity.LEFT/RIGHT.
+     */
+    int maxContentWidth;
+
+    float pivotX;
+    float pivotY;
+
+    void setDisplay(int width, int height, int top) {
+        displayWidth = width;
+        displayHeight = height;
+        displayTop = top;
+    }
+
+    void setAnchor(Rect rect) {
+        anchorLeft = rect.left;
+        anchorTop = rect.top;
+        anchorWidth = rect.width();
+        anchorHeight = rect.height();
+    }
+
+    /**
+     * Places a Gravity.TOP or Gravity.BOTTOM tooltip, centered on the anchor.
+     */
+    void placeVertical(int gravity, int contentWidth, int contentHeight, int arrowWidth, int arrowHeight) {
+        int width = Math.max(contentWidth, arrowWidth);
+        int height = contentHeight + arrowHeight;
+
+        if (gravity == Gravity.TOP) {
+            y = anchorTop - height;
+        } else {
+            // gravity == Gravity.BOTTOM
+            y = anchorTop + anchorHeight;
+        }
+
+        int anchorHorizontalCenter = anchorLeft + anchorWidth / 2;
+        int left = anchorHorizontalCenter - width / 2;
+        int right = left + width;
+        x = Math.max(0, right > displayWidth ? displayWidth - width : left);
+
+        arrowMargin = anchorHorizontalCenter - x - arrowWidth / 2;
+
+        pivotX = width / 2;
+        pivotY = gravity == Gravity.TOP ? height : 0;
+    }
+
+    /**
+     * First step for a Gravity.LEFT or Gravity.RIGHT tooltip: horizontal position and the max
+     * width left for the content.
+     */
+    void placeSideHorizontal(int gravity, int contentWidth, int arrowWidth, int margin) {
+        int width = contentWidth + arrowWidth;
+        int rightPadding;
+
+        if (gravity == Gravity.LEFT) {
+            x = Math.max(0, anchorLeft - width);
+            x += margin;
+            rightPadding = displayWidth - anchorLeft;
+        } else {
+            // gravity == Gravity.RIGHT
+            x = anchorLeft + anchorWidth;
+            rightPadding = margin;
+        }
+
+        maxContentWidth = displayWidth - rightPadding - x - arrowWidth;
+    }
+
+    /**
+     * Second step for a Gravity.LEFT or Gravity.RIGHT tooltip, once the content has been measured
+     * against {@link #maxContentWidth}.
+     */
+    void placeSideVertical(int gravity, int arrowGravity, int contentHeight, int arrowHeight,
+                           int popupWidth, int margin) {
+        int height = Math.max(contentHeight, arrowHeight);
+
+        int anchorVerticalCenter = anchorTop + anchorHeight / 2;
+        int top = anchorVerticalCenter - height / 2;
+        int bottom = top + height;
+
+        if (arrowGravity == Gravity.TOP) {
+            top = anchorTop;
+            bottom = anchorTop + height;
+        } else if (arrowGravity == Gravity.BOTTOM) {
+            top = anchorTop + anchorHeight - height;
+        }
+
+        y = Math.max(0, bottom > displayHeight ? displayHeight - height - margin : top);
+        y = Math.max(0, y < displayTop ? displayTop + margin : y);
+
+        arrowMargin = anchorVerticalCenter - y - arrowHeight / 2;
+
+        pivotX = gravity == Gravity.LEFT ? popupWidth : 0;
+        pivotY = anchorVerticalCenter - y;
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2017 sonvp
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sonvp.tooltip;
+
+import android.content.ComponentCallbacks;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Rect;
+import android.graphics.Typeface;
+import android.support.annotation.Nullable;
+import android.view.View;
+
+import java.util.Arrays;
+import java.util.WeakHashMap;
+
+/**
+ * Last placement of a tool tip on each anchor view, so that showing a tool tip again on an anchor
+ * that has not changed skips the gravity fallback, the measures and the placement math.
+ * <p/>
+ * An entry is keyed by the anchor rect on screen, the display geometry, the content and the
+ * style of the tool tip. It is invalidated when the anchor is laid out with other bounds and,
+ * for all anchors, on configuration changes. Entries go away with their anchor views.
+ */
+final class PlacementMemo {
+
+    static final class Entry implements View.OnLayoutChangeListener {
+
+        boolean valid;
+
+        // key
+        int anchorLeft;
+        int anchorTop;
+        int anchorRight;
+        int anchorBottom;
+        int displayWidth;
+        int displayHeight;
+        int displayTop;
+        CharSequence text;
+        Typeface typeface;
+        float[] spec;
+
+        // placement
+        int gravity;
+        int x;
+        int y;
+        int width;
+        int height;
+        int arrowMargin;
+        // -1 for Gravity.TOP/BOTTOM
+        int contentMaxWidth;
+        float pivotX;
+        float pivotY;
+
+        boolean matches(Rect anchor, int displayWidth, int displayHeight, int displayTop,
+                        CharSequence text, Typeface typeface, float[] spec) {
+            // spans are not compared, a spanned text only matches itself
+            return valid && anchor.left == anchorLeft && anchor.top == anchorTop
+                    && anchor.right == anchorRight && anchor.bottom == anchorBottom
+                    && displayWidth == this.displayWidth && displayHeight == this.displayHeight
+                    && displayTop == this.displayTop
+                    && (text == this.text || text instanceof String && text.equals(this.text))
+                    && typeface == this.typeface && Arrays.equals(spec, this.spec);
+        }
+
+        void setKey(Rect anchor, int displayWidth, int displayHeight, int displayTop,
+                    CharSequence text, Typeface typeface, float[] spec) {
+            anchorLeft = anchor.left;
+            anchorTop = anchor.top;
+            anchorRight = anchor.right;
+            anchorBottom = anchor.bottom;
+            this.displayWidth = displayWidth;
+            this.displayHeight = displayHeight;
+            this.displayTop = displayTop;
+            this.text = text;
+            this.typeface = typeface;
+            this.spec = spec;
+        }
+
+        @Override
+        public void onLayoutChange(View view, int left, int top, int right, int bottom,
+                                   int oldLeft, int oldTop, int oldRight, int oldBottom) {
+            if (left != oldLeft || top != oldTop || right != oldRight || bottom != oldBottom) {
+                valid = false;
+            }
+        }
+    }
+
+    private static final WeakHashMap<View, Entry> entries = new WeakHashMap<View, Entry>();
+    private static boolean configCallbacksRegistered = false;
+    private static int hitCount = 0;
+    private static int missCount = 0;
+
+    private PlacementMemo() {
+    }
+
+    /**
+     * Returns the entry of the anchor if it is valid and has the given key, or null.
+     *
+     * @param spec the style of the tool tip that its size and placement depend on
+     */
+    @Nullable
+    static Entry find(View anchor, Rect rect, int displayWidth, int displayHeight, int displayTop,
+                      CharSequence text, Typeface typeface, float[] spec) {
+        Entry entry = entries.get(anchor);
+        if (entry != null && entry.matches(rect, displayWidth, displayHeight, displayTop, text, typeface, spec)) {
+            return entry;
+        }
+        return null;
+    }
+
+    static void countHit() {
+        hitCount++;
+    }
+
+    static void countMiss() {
+        missCount++;
+    }
+
+    /**
+     * Returns the entry of the anchor to fill in and mark valid, created on first use.
+     */
+    static Entry obtain(Context context, View anchor) {
+        if (!configCallbacksRegistered) {
+            configCallbacksRegistered = true;
+            context.getApplicationContext().registerComponentCallbacks(new ComponentCallbacks() {
+                @Override
+                public void onConfigurationChanged(Configuration newConfig) {
+                    invalidateAll();
+                }
+
+                @Override
+                public void onLowMemory() {
+                    entries.clear();
+                }
+            });
+        }
+        Entry entry = entries.get(anchor);
+        if (entry == null) {
+            entry = new Entry();
+            anchor.addOnLayoutChangeListener(entry);
+            entries.put(anchor, entry);
+        }
+        return entry;
+    }
+
+    static void invalidateAll() {
+        for (Entry entry : entries.values()) {
+            entry.valid = false;
+        }
+    }
+
+    static void clear() {
+        for (View anchor : entries.keySet()) {
+            anchor.removeOnLayoutChangeListener(entries.get(anchor));
+        }
+        entries.clear();
+        hitCount = 0;
+        missCount = 0;
+    }
+
+    static int getHitCount() {
+        return hitCount;
+    }
+
+    static int getMissCount() {
+        return missCount;
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2017 sonvp
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sonvp.tooltip;
+
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.UiThread;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.view.Gravity;
+
+/**
+ * A tool tip whose style, text and text layout have been resolved by
+ * {@link Tooltip.Builder#prepare()}, possibly on a background thread. {@link #attach()} only
+ * creates the views and is cheap enough to run while a screen is being shown.
+ * <p/>
+ * A prepared tool tip is a snapshot: changing its builder afterwards does not change it. It is
+ * attached once, as its custom view or arrow drawable, if any, can only belong to one tool tip.
+ */
+public final class PreparedTooltip {
+
+    /**
+     * Copy of the builder taken by prepare(), never changed afterwards. Being reached through a
+     * final field, it is safely published to the UI thread along with this instance.
+     */
+    private final Tooltip.Builder spec;
+
+    final CharSequence text;
+    @Nullable
+    final TextPaint paint;
+    final Layout.Alignment alignment;
+    final int maxTextWidth;
+
+    /**
+     * Text layout, or null when the content is a custom view or uses a fixed line count.
+     */
+    @Nullable
+    final Layout layout;
+
+    private final int bubbleWidth;
+    private final int bubbleHeight;
+
+    private boolean attached = false;
+
+    PreparedTooltip(Tooltip.Builder spec, CharSequence text, @Nullable TextPaint paint, int textGravity,
+                    int maxTextWidth, int horizontalPadding, int verticalPadding) {
+        this.spec = spec;
+        this.text = text;
+        this.paint = paint;
+        this.maxTextWidth = maxTextWidth;
+        this.alignment = alignmentFromGravity(textGravity);
+
+        if (paint != null && text != null) {
+            layout = makeLayout(text, paint, alignment, maxTextWidth);
+            bubbleWidth = layout.getWidth() + horizontalPadding;
+            bubbleHeight = layout.getHeight() + verticalPadding;
+        } else {
+            layout = null;
+            bubbleWidth = 0;
+            bubbleHeight = 0;
+        }
+    }
+
+    /**
+     * Creates the views of the tool tip. The returned tool tip still needs {@link Tooltip#show()}.
+     * Start and end gravities are resolved here, against the layout direction the anchor has now.
+     *
+     * @throws IllegalStateException if the tool tip has already been attached
+     */
+    @UiThread
+    @NonNull
+    public Tooltip attach() {
+        if (attached) {
+            throw new IllegalStateException("PreparedTooltip can only be attached once");
+        }
+        attached = true;
+        boolean traced = TooltipTrace.begin(TooltipTrace.BUILD);
+        try {
+            Tooltip.Builder builder = new Tooltip.Builder(spec);
+            builder.resolveGravity();
+            return new Tooltip(builder, this);
+        } finally {
+            TooltipTrace.end(traced);
+        }
+    }
+
+    /**
+     * Returns the width in pixel of the bubble without the arrow, or 0 if the content is a custom
+     * view.
+     */
+    public int getBubbleWidth() {
+        return bubbleWidth;
+    }
+
+    /**
+     * Returns the height in pixel of the bubble without the arrow, or 0 if the content is a custom
+     * view.
+     */
+    public int getBubbleHeight() {
+        return bubbleHeight;
+    }
+
+    /**
+     * Lays the text out at its desired width, bounded by maxWidth, like a wrap_content TextView.
+     */
+    static Layout makeLayout(CharSequence text, TextPaint paint, Layout.Alignment alignment, int maxWidth) {
+        int width = (int) Math.ceil(Layout.getDesiredWidth(text, paint));
+        width = Math.max(0, Math.min(width, maxWidth));
+        return new StaticLayout(text, paint, width, alignment, 1.0F, 0.0F, true);
+    }
+
+    static TextPaint createPaint(float textSize, int textColor, Typeface typeface, int typefaceStyle) {
+        TextPaint paint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+        paint.setTextSize(textSize);
+        paint.setColor(textColor);
+        applyTypeface(paint, typeface, typefaceStyle);
+        return paint;
+    }
+
+    /**
+     * Same as {@link android.widget.TextView#setTypeface(Typeface, int)}.
+     */
+    private static void applyTypeface(TextPaint paint, Typeface typeface, int style) {
+        if (style > 0) {
+            typeface = typeface == null ? Typeface.defaultFromStyle(style) : Typeface.create(typeface, style);
+            paint.setTypeface(typeface);
+            int need = style & ~(typeface != null ? typeface.getStyle() : 0);
+            paint.setFakeBoldText((need & Typeface.BOLD) != 0);
+            paint.setTextSkewX((need & Typeface.ITALIC) != 0 ? -0.25F : 0.0F);
+        } else {
+            paint.setFakeBoldText(false);
+            paint.setTextSkewX(0.0F);
+            paint.setTypeface(typeface);
+        }
+    }
+
+    static Layout.Alignment alignmentFromGravity(int gravity) {
+        switch (gravity & Gravity.HORIZONTAL_GRAVITY_MASK) {
+            case Gravity.CENTER_HORIZONTAL:
+                return Layout.Alignment.ALIGN_CENTER;
+            case Gravity.RIGHT:
+                return Layout.Alignment.ALIGN_OPPOSITE;
+            default:
+                return Layout.Alignment.ALIGN_NORMAL;
+        }
+    }
+}
@@ -0,0 +1,408 @@
+/*
+ * Copyright (C) 2017 sonvp
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sonvp.tooltip;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.support.v4.view.ViewCompat;
+import android.text.Layout;
+import android.text.TextPaint;
+import android.text.TextUtils;
+import android.view.MotionEvent;
+import android.view.VelocityTracker;
+import android.view.View;
+import android.view.ViewConfiguration;
+import android.widget.OverScroller;
+
+/**
+ * Text content bounded to a maximum height, scrolled vertically when the text is taller.
+ * <p/>
+ * Lines are broken on demand: measuring breaks only the lines that fit in the maximum height,
+ * drawing only the visible ones, and scrolling further breaks the lines scrolled into view. The
+ * cost of showing a tool tip is thus the same for a few lines and for a whole page.
+ * <p/>
+ * Lines break at spaces and new lines. Styling spans are dropped: the text is kept and drawn as
+ * plain text, so a rich text tool tip with a maximum height loses its styling and its links.
+ */
+final class ScrollingTextView extends View implements TextContentView {
+
+    private static final int INITIAL_LINES = 16;
+    // characters looked at to break a line, so a line costs the same in a long paragraph
+    private static final int BREAK_WINDOW = 256;
+
+    private final TextPaint paint;
+    private final Layout.Alignment alignment;
+    private final int maxHeight;
+    private final Paint.FontMetricsInt fontMetrics = new Paint.FontMetricsInt();
+    private final float[] measured = new float[1];
+
+    private CharSequence text;
+    private int maxTextWidth;
+
+    // lines broken so far, for breakWidth
+    private int breakWidth = -1;
+    private int[] lineStarts = new int[INITIAL_LINES];
+    private int[] lineEnds = new int[INITIAL_LINES];
+    private float[] lineWidths = new float[INITIAL_LINES];
+    private int lineCount;
+    private int nextLineStart;
+    private float widestLine;
+
+    private final OverScroller scroller;
+    private final int touchSlop;
+    private final int minimumVelocity;
+    private final int maximumVelocity;
+    private VelocityTracker velocityTracker;
+    private float lastTouchY;
+    private boolean dragging;
+
+    ScrollingTextView(Context context, CharSequence text, TextPaint paint, Layout.Alignment alignment,
+                      int maxTextWidth, int maxHeight) {
+        super(context);
+        this.paint = paint;
+        this.alignment = alignment;
+        this.text = text == null ? "" : text.toString();
+        this.maxTextWidth = maxTextWidth;
+        this.maxHeight = maxHeight;
+        paint.getFontMetricsInt(fontMetrics);
+
+        scroller = new OverScroller(context);
+        ViewConfiguration configuration = ViewConfiguration.get(context);
+        touchSlop = configuration.getScaledTouchSlop();
+        minimumVelocity = configuration.getScaledMinimumFlingVelocity();
+        maximumVelocity = configuration.getScaledMaximumFlingVelocity();
+        setVerticalFadingEdgeEnabled(true);
+    }
+
+    @Override
+    public CharSequence getText() {
+        return text;
+    }
+
+    @Override
+    public void setText(CharSequence text) {
+        this.text = text == null ? "" : text.toString();
+        breakWidth = -1;
+        scroller.forceFinished(true);
+        scrollTo(0, 0);
+        requestLayout();
+        invalidate();
+    }
+
+    @Override
+    public TextPaint getPaint() {
+        return paint;
+    }
+
+    @Override
+    public void setTypeface(Typeface typeface, boolean relayout) {
+        paint.setTypeface(typeface);
+        if (relayout) {
+            paint.getFontMetricsInt(fontMetrics);
+            breakWidth = -1;
+            requestLayout();
+        }
+        invalidate();
+    }
+
+    @Override
+    public void setMaxWidth(int maxWidth) {
+        int width = maxWidth - getPaddingLeft() - getPaddingRight();
+        if (width > 0 && width != maxTextWidth) {
+            maxTextWidth = width;
+            requestLayout();
+            invalidate();
+        }
+    }
+
+    /**
+     * Returns the number of lines broken so far, which is less than the line count of the text
+     * until the end of the text has been scrolled into view.
+     */
+    int getBrokenLineCount() {
+        return lineCount;
+    }
+
+    private int getLineHeight() {
+        return Math.max(1, fontMetrics.descent - fontMetrics.ascent);
+    }
+
+    private int getViewportHeight() {
+        return getHeight() - getPaddingTop() - getPaddingBottom();
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int horizontalPadding = getPaddingLeft() + getPaddingRight();
+        int verticalPadding = getPaddingTop() + getPaddingBottom();
+
+        int width = maxTextWidth;
+        if (MeasureSpec.getMode(widthMeasureSpec) != MeasureSpec.UNSPECIFIED) {
+            width = Math.min(width, MeasureSpec.getSize(widthMeasureSpec) - horizontalPadding);
+        }
+        resetLines(Math.max(1, width));
+
+        int lineHeight = getLineHeight();
+        int visibleLines = Math.max(1, (maxHeight - verticalPadding) / lineHeight);
+        // one more than fits tells whether the text overflows
+        ensureLines(visibleLines + 1);
+
+        int contentWidth;
+        int contentHeight;
+        if (isComplete() && lineCount <= visibleLines) {
+            contentWidth = (int) Math.ceil(widestLine);
+            contentHeight = lineCount * lineHeight;
+        } else {
+            contentWidth = breakWidth;
+            contentHeight = visibleLines * lineHeight;
+        }
+        setMeasuredDimension(
+                resolveSize(contentWidth + horizontalPadding, widthMeasureSpec),
+                resolveSize(contentHeight + verticalPadding, heightMeasureSpec));
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        scrollTo(0, getScrollY());
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        int lineHeight = getLineHeight();
+        int scrollY = getScrollY();
+        int top = getPaddingTop();
+        int left = getPaddingLeft();
+        int contentWidth = getWidth() - left - getPaddingRight();
+
+        int saveCount = canvas.save();
+        canvas.clipRect(left, scrollY + top, left + contentWidth, scrollY + top + getViewportHeight());
+
+        int first = scrollY / lineHeight;
+        int last = (scrollY + getViewportHeight()) / lineHeight;
+        ensureLines(last + 1);
+        last = Math.min(last, lineCount - 1);
+        for (int line = first; line <= last; line++) {
+            float x = left;
+            if (alignment == Layout.Alignment.ALIGN_CENTER) {
+                x += (contentWidth - lineWidths[line]) / 2.0F;
+            } else if (alignment == Layout.Alignment.ALIGN_OPPOSITE) {
+                x += contentWidth - lineWidths[line];
+            }
+            int baseline = top + line * lineHeight - fontMetrics.ascent;
+            canvas.drawText(text, lineStarts[line], lineEnds[line], x, baseline, paint);
+        }
+        canvas.restoreToCount(saveCount);
+    }
+
+    @Override
+    public void scrollTo(int x, int y) {
+        super.scrollTo(0, clampScroll(y));
+    }
+
+    private int clampScroll(int y) {
+        int viewportHeight = getViewportHeight();
+        if (y <= 0 || viewportHeight <= 0) {
+            return 0;
+        }
+        int lineHeight = getLineHeight();
+        ensureLines((y + viewportHeight) / lineHeight + 1);
+        if (!isComplete()) {
+            return y;
+        }
+        return Math.min(y, Math.max(0, lineCount * lineHeight - viewportHeight));
+    }
+
+    private boolean canScroll() {
+        int lineHeight = getLineHeight();
+        return !isComplete() || lineCount * lineHeight > getViewportHeight();
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (!canScroll()) {
+            return super.onTouchEvent(event);
+        }
+        if (velocityTracker == null) {
+            velocityTracker = VelocityTracker.obtain();
+        }
+        velocityTracker.addMovement(event);
+
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                scroller.forceFinished(true);
+                lastTouchY = event.getY();
+                dragging = false;
+                break;
+            case MotionEvent.ACTION_MOVE:
+                float deltaY = lastTouchY - event.getY();
+                if (!dragging && Math.abs(deltaY) > touchSlop) {
+                    dragging = true;
+                    getParent().requestDisallowInterceptTouchEvent(true);
+                }
+                if (dragging) {
+                    scrollTo(0, getScrollY() + (int) deltaY);
+                    lastTouchY = event.getY();
+                }
+                break;
+            case MotionEvent.ACTION_UP:
+                if (dragging) {
+                    velocityTracker.computeCurrentVelocity(1000, maximumVelocity);
+                    int velocity = (int) velocityTracker.getYVelocity();
+                    if (Math.abs(velocity) > minimumVelocity) {
+                        // the bottom is not known before the last line is broken, clampScroll() stops the fling
+                        scroller.fling(0, getScrollY(), 0, -velocity, 0, 0, 0, Integer.MAX_VALUE / 2);
+                        ViewCompat.postInvalidateOnAnimation(this);
+                    }
+                } else {
+                    performClick();
+                }
+                recycleVelocityTracker();
+                break;
+            case MotionEvent.ACTION_CANCEL:
+                recycleVelocityTracker();
+                break;
+        }
+        return true;
+    }
+
+    private void recycleVelocityTracker() {
+        dragging = false;
+        if (velocityTracker != null) {
+            velocityTracker.recycle();
+            velocityTracker = null;
+        }
+    }
+
+    @Override
+    public void computeScroll() {
+        if (scroller.computeScrollOffset()) {
+            int y = scroller.getCurrY();
+            scrollTo(0, y);
+            if (getScrollY() != y) {
+                scroller.forceFinished(true);
+            } else {
+                ViewCompat.postInvalidateOnAnimation(this);
+            }
+        }
+    }
+
+    @Override
+    protected float getTopFadingEdgeStrength() {
+        return getScrollY() > 0 ? 1.0F : 0.0F;
+    }
+
+    @Override
+    protected float getBottomFadingEdgeStrength() {
+        return !isComplete() || getScrollY() + getViewportHeight() < lineCount * getLineHeight() ? 1.0F : 0.0F;
+    }
+
+    private boolean isComplete() {
+        return nextLineStart > text.length();
+    }
+
+    private void resetLines(int width) {
+        if (width == breakWidth) {
+            return;
+        }
+        breakWidth = width;
+        lineCount = 0;
+        nextLineStart = 0;
+        widestLine = 0.0F;
+    }
+
+    /**
+     * Breaks lines until at least count lines are known or the text ends.
+     */
+    private void ensureLines(int count) {
+        if (breakWidth < 0) {
+            resetLines(Math.max(1, maxTextWidth));
+        }
+        while (lineCount < count && !isComplete()) {
+            breakLine();
+        }
+    }
+
+    private void breakLine() {
+        int length = text.length();
+        int start = nextLineStart;
+
+        // look for the new line and break within a window, widened while the whole window fits
+        int limit = Math.min(length, start + BREAK_WINDOW);
+        int paragraphEnd;
+        int count;
+        while (true) {
+            paragraphEnd = TextUtils.indexOf(text, '\n', start, limit);
+            if (paragraphEnd < 0) {
+                paragraphEnd = limit;
+            }
+            count = paint.breakText(text, start, paragraphEnd, true, breakWidth, measured);
+            if (start + count < paragraphEnd || paragraphEnd < limit || limit == length) {
+                break;
+            }
+            limit = Math.min(length, start + 2 * (limit - start));
+        }
+
+        int end;
+        int next;
+        if (start + count >= paragraphEnd) {
+            // paragraphEnd is the new line or the end of the text
+            end = paragraphEnd;
+            next = paragraphEnd + 1;
+        } else {
+            end = start + Math.max(1, count);
+            // end is paragraphEnd when not even one character fits
+            for (int i = Math.min(end, paragraphEnd - 1); i > start; i--) {
+                if (text.charAt(i) == ' ') {
+                    end = i;
+                    break;
+                }
+            }
+            next = end;
+            while (next < length && text.charAt(next) == ' ') {
+                next++;
+            }
+            // past the new line, or past the end of the text
+            if (next == length || text.charAt(next) == '\n') {
+                next++;
+            }
+        }
+
+        if (lineCount == lineStarts.length) {
+            lineStarts = grow(lineStarts);
+            lineEnds = grow(lineEnds);
+            float[] widths = new float[lineWidths.length * 2];
+            System.arraycopy(lineWidths, 0, widths, 0, lineWidths.length);
+            lineWidths = widths;
+        }
+        float width = end - start == count ? measured[0] : paint.measureText(text, start, end);
+        lineStarts[lineCount] = start;
+        lineEnds[lineCount] = end;
+        lineWidths[lineCount] = width;
+        lineCount++;
+        widestLine = Math.max(widestLine, width);
+        nextLineStart = next;
+    }
+
+    private static int[] grow(int[] array) {
+        int[] grown = new int[array.length * 2];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+}
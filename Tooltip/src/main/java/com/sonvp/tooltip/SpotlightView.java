@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2017 sonvp
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sonvp.tooltip;
+
+import android.animation.ValueAnimator;
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.os.SystemClock;
+import android.view.View;
+import android.view.animation.DecelerateInterpolator;
+
+/**
+ * Dismiss overlay of a tool tip in spotlight mode: dims the screen except for a hole around the
+ * anchor. The dimmed area is a single path, the screen rect with the hole cut out by the even-odd
+ * rule, filled in one draw call; nothing is rendered to a bitmap.
+ * <p/>
+ * When the anchor moves, or when a spotlight shows right after another one on the same screen,
+ * the hole slides from where it was. Each frame only rebuilds the path.
+ */
+final class SpotlightView extends View {
+
+    static final long MOVE_DURATION = 250L;
+    /**
+     * How long after a spotlight goes away the next one still slides from its hole.
+     */
+    static final long HANDOFF_TIMEOUT = 500L;
+
+    // hole of the last spotlight gone, in screen coordinates
+    private static final RectF handoffHole = new RectF();
+    private static long handoffTime = -1L;
+
+    private final int shape;
+    private final float padding;
+    private final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Path path = new Path();
+    private final int[] location = new int[2];
+
+    private final RectF hole = new RectF();
+    private final RectF from = new RectF();
+    private final RectF to = new RectF();
+    private boolean hasHole = false;
+
+    private final ValueAnimator animator = ValueAnimator.ofFloat(0.0F, 1.0F);
+
+    SpotlightView(Context context, int shape, int color, float padding) {
+        super(context);
+        this.shape = shape;
+        this.padding = padding;
+        paint.setColor(color);
+        path.setFillType(Path.FillType.EVEN_ODD);
+        animator.setDuration(MOVE_DURATION);
+        animator.setInterpolator(new DecelerateInterpolator());
+        animator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+            @Override
+            public void onAnimationUpdate(ValueAnimator animation) {
+                float fraction = (Float) animation.getAnimatedValue();
+                hole.set(from.left + (to.left - from.left) * fraction,
+                        from.top + (to.top - from.top) * fraction,
+                        from.right + (to.right - from.right) * fraction,
+                        from.bottom + (to.bottom - from.bottom) * fraction);
+                invalidate();
+            }
+        });
+    }
+
+    /**
+     * Moves the hole around the given anchor rect, in screen coordinates.
+     */
+    void setHole(Rect anchor) {
+        getLocationOnScreen(location);
+        float left = anchor.left - location[0] - padding;
+        float top = anchor.top - location[1] - padding;
+        float right = anchor.right - location[0] + padding;
+        float bottom = anchor.bottom - location[1] + padding;
+        if (to.left == left && to.top == top && to.right == right && to.bottom == bottom && hasHole) {
+            return;
+        }
+        to.set(left, top, right, bottom);
+
+        if (hasHole) {
+            from.set(hole);
+        } else if (handoffTime >= 0L && SystemClock.uptimeMillis() - handoffTime < HANDOFF_TIMEOUT) {
+            from.set(handoffHole);
+            from.offset(-location[0], -location[1]);
+        } else {
+            from.set(to);
+        }
+        hasHole = true;
+        if (from.equals(to) || getWindowToken() == null) {
+            animator.cancel();
+            hole.set(to);
+            invalidate();
+        } else {
+            animator.cancel();
+            hole.set(from);
+            animator.start();
+        }
+    }
+
+    boolean isMoving() {
+        return animator.isRunning();
+    }
+
+    RectF getHole() {
+        return hole;
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        animator.cancel();
+        if (hasHole) {
+            handoffHole.set(hole);
+            handoffHole.offset(location[0], location[1]);
+            handoffTime = SystemClock.uptimeMillis();
+        }
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (!hasHole) {
+            // nothing to dim around yet
+            return;
+        }
+        path.rewind();
+        path.addRect(0.0F, 0.0F, getWidth(), getHeight(), Path.Direction.CW);
+        switch (shape) {
+            case Tooltip.SPOTLIGHT_CIRCLE:
+                // circumscribed, the whole anchor shows
+                float radius = (float) Math.hypot(hole.width(), hole.height()) / 2.0F;
+                path.addCircle(hole.centerX(), hole.centerY(), radius, Path.Direction.CW);
+                break;
+            case Tooltip.SPOTLIGHT_ROUND_RECT:
+                path.addRoundRect(hole, padding, padding, Path.Direction.CW);
+                break;
+            default:
+                path.addRect(hole, Path.Direction.CW);
+                break;
+        }
+        canvas.drawPath(path, paint);
+    }
+}
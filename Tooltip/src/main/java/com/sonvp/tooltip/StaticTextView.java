@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2017 sonvp
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sonvp.tooltip;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Typeface;
+import android.text.Layout;
+import android.text.TextPaint;
+import android.view.View;
+
+/**
+ * Draws a text layout computed ahead of time by {@link PreparedTooltip}, so that showing the tool
+ * tip does not lay the text out again. The layout is rebuilt only if the view gets narrower than
+ * the prepared text, or if the text changes.
+ */
+final class StaticTextView extends View implements TextContentView {
+
+    private final TextPaint paint;
+    private final Layout.Alignment alignment;
+    private CharSequence text;
+    private Layout layout;
+    private int maxTextWidth;
+
+    StaticTextView(Context context, PreparedTooltip prepared) {
+        super(context);
+        this.paint = new TextPaint(prepared.paint);
+        this.alignment = prepared.alignment;
+        this.text = prepared.text;
+        this.layout = prepared.layout;
+        this.maxTextWidth = prepared.maxTextWidth;
+    }
+
+    @Override
+    public CharSequence getText() {
+        return text;
+    }
+
+    @Override
+    public void setText(CharSequence text) {
+        this.text = text;
+        layout = PreparedTooltip.makeLayout(text, paint, alignment, maxTextWidth);
+        requestLayout();
+        invalidate();
+    }
+
+    @Override
+    public TextPaint getPaint() {
+        return paint;
+    }
+
+    @Override
+    public void setTypeface(Typeface typeface, boolean relayout) {
+        paint.setTypeface(typeface);
+        if (relayout) {
+            layout = PreparedTooltip.makeLayout(text, paint, alignment, maxTextWidth);
+            requestLayout();
+        }
+        invalidate();
+    }
+
+    int getLineCount() {
+        return layout.getLineCount();
+    }
+
+    @Override
+    public void setMaxWidth(int maxWidth) {
+        if (relayout(maxWidth - getPaddingLeft() - getPaddingRight())) {
+            requestLayout();
+            invalidate();
+        }
+    }
+
+    private boolean relayout(int width) {
+        if (width <= 0 || width == maxTextWidth) {
+            return false;
+        }
+        maxTextWidth = width;
+        if (layout.getWidth() > width || layout.getLineCount() > 1) {
+            layout = PreparedTooltip.makeLayout(text, paint, alignment, width);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int horizontalPadding = getPaddingLeft() + getPaddingRight();
+        if (MeasureSpec.getMode(widthMeasureSpec) != MeasureSpec.UNSPECIFIED
+                && layout.getWidth() + horizontalPadding > MeasureSpec.getSize(widthMeasureSpec)) {
+            relayout(MeasureSpec.getSize(widthMeasureSpec) - horizontalPadding);
+        }
+        setMeasuredDimension(
+                resolveSize(layout.getWidth() + horizontalPadding, widthMeasureSpec),
+                resolveSize(layout.getHeight() + getPaddingTop() + getPaddingBottom(), heightMeasureSpec));
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        int saveCount = canvas.save();
+        canvas.translate(getPaddingLeft(), getPaddingTop());
+        layout.draw(canvas);
+        canvas.restoreToCount(saveCount);
+    }
+}
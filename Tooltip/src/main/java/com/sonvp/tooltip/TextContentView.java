@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2017 sonvp
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sonvp.tooltip;
+
+import android.graphics.Typeface;
+import android.text.TextPaint;
+
+/**
+ * Text views of the library drawing their own text layout, used instead of a TextView.
+ */
+interface TextContentView {
+
+    CharSequence getText();
+
+    void setText(CharSequence text);
+
+    /**
+     * Same as {@link android.widget.TextView#setMaxWidth(int)}: bounds the width of the view,
+     * padding included.
+     */
+    void setMaxWidth(int maxWidth);
+
+    TextPaint getPaint();
+
+    /**
+     * Draws the text with another typeface, laying it out again only if asked: a typeface with
+     * the same metrics keeps the line breaks.
+     */
+    void setTypeface(Typeface typeface, boolean relayout);
+}
@@ -20,23 +20,39 @@ import android.animation.Animator;
 import android.animation.AnimatorListenerAdapter;
 import android.app.Activity;
 import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
 import android.content.res.TypedArray;
+import android.graphics.Bitmap;
 import android.graphics.Color;
+import android.graphics.Paint;
 import android.graphics.Rect;
 import android.graphics.Typeface;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.Drawable;
 import android.graphics.drawable.GradientDrawable;
 import android.os.Build;
+import android.os.Bundle;
+import android.net.Uri;
 import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.SystemClock;
 import android.support.annotation.ColorInt;
 import android.support.annotation.ColorRes;
+import android.support.annotation.DrawableRes;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.annotation.StringRes;
 import android.support.annotation.StyleRes;
 import android.support.annotation.UiThread;
+import android.support.annotation.WorkerThread;
 import android.support.v4.content.ContextCompat;
+import android.support.v4.widget.TextViewCompat;
+import android.text.TextPaint;
 import android.text.TextUtils;
+import android.text.method.LinkMovementMethod;
 import android.util.DisplayMetrics;
 import android.util.TypedValue;
 import android.view.Gravity;
@@ -53,53 +69,195 @@ import android.widget.LinearLayout;
 import android.widget.PopupWindow;
 import android.widget.TextView;
 
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.WeakHashMap;
+
 import static com.sonvp.tooltip.R.styleable.Tooltip_android_lines;
 import static com.sonvp.tooltip.R.styleable.Tooltip_android_text;
 import static com.sonvp.tooltip.R.styleable.Tooltip_android_textSize;
 import static com.sonvp.tooltip.R.styleable.Tooltip_tooltipMargin;
 
 public class Tooltip implements ViewTreeObserver.OnPreDrawListener, View.OnClickListener,
-        View.OnTouchListener, PopupWindow.OnDismissListener {
+        View.OnTouchListener, View.OnHoverListener, PopupWindow.OnDismissListener {
 
     private static final int SIZE_TOUCH = 5;
 
+    /**
+     * Time left at least to a timed tool tip once the user stops touching or hovering it.
+     */
+    private static final long DURATION_AFTER_TOUCH = 1500L;
+
+    private static final String STATE_TOOLTIPS = "com.sonvp.tooltip.Tooltip.STATE_TOOLTIPS";
+    private static final String STATE_ANCHOR_ID = "anchorId";
+
+    /**
+     * Tool tips currently showing, used by {@link #saveState(Activity, Bundle)}.
+     */
+    private static final Set<Tooltip> showingTooltips =
+            Collections.newSetFromMap(new WeakHashMap<Tooltip, Boolean>());
+
+    private static boolean debugOverlayEnabled = false;
+
+    @Nullable
+    private static TooltipEvents events;
+
+    /**
+     * Status bar height by {@link Configuration#orientation}, -1 until looked up.
+     */
+    private static final int[] statusBarHeights = {-1, -1, -1, -1};
+    private static boolean prewarmed = false;
+
+    @Nullable
+    private static TooltipProfile profileOverride;
+
+    private final TooltipProfile profile;
+    // null when drawn in the window of the anchor
+    @Nullable
     private final PopupWindow popupWindow;
-    private final Rect rectAnchorView;
+    @Nullable
+    private TooltipLayer layer;
+    private final Rect rectAnchorView = new Rect();
+    private final DisplayMetrics displayMetrics = new DisplayMetrics();
+    // configuration the display metrics were read for
+    private int displayWidthDp = -1;
+    private int displayHeightDp = -1;
+    private int displayDensityDpi = -1;
+    private int displayOrientation = -1;
+    // last geometry given to the window, and max width given to the content
+    private int windowX = Integer.MIN_VALUE;
+    private int windowY;
+    private int windowWidth;
+    private int windowHeight;
+    private int appliedContentMaxWidth = -1;
+    private final Placement placement = new Placement();
     private View overlay = null;
     private ViewGroup rootView = null;
 
+    private final Runnable restoreAnchorClickable = new Runnable() {
+        @Override
+        public void run() {
+            anchorView.setClickable(true);
+        }
+    };
+
+    private final TooltipTimer.Entry timeout = new TooltipTimer.Entry(new Runnable() {
+        @Override
+        public void run() {
+            dismissReason = TooltipEvents.REASON_TIMEOUT;
+            remove();
+        }
+    });
+    @Nullable
+    private TooltipTimer timer;
+
+    private final AnimatorListenerAdapter dismissOnAnimationEnd = new AnimatorListenerAdapter() {
+        @Override
+        public void onAnimationEnd(Animator animation) {
+            dismissWindow();
+        }
+    };
+
     @Override
     public boolean onTouch(View view, MotionEvent event) {
 
-        if (event.getAction() == MotionEvent.ACTION_DOWN) {
+        if (event.getAction() == MotionEvent.ACTION_OUTSIDE) {
+            // popup window watching outside touches, without overlay
+            onOutsideTouch((int) event.getRawX(), (int) event.getRawY());
+            return true;
+        }
 
-            if (listener != null) {
-                listener.onClickedOutsideTooltip(this);
+        if (view == container) {
+            switch (event.getActionMasked()) {
+                case MotionEvent.ACTION_DOWN:
+                    pauseDuration();
+                    break;
+                case MotionEvent.ACTION_UP:
+                case MotionEvent.ACTION_CANCEL:
+                    resumeDuration();
+                    break;
             }
-            remove();
+            return false;
+        }
 
-            final int x = (int) event.getX();
-            final int y = (int) event.getY();
-            Rect rect = new Rect(x, y, x + SIZE_TOUCH, y + SIZE_TOUCH);
-            if (rectAnchorView.contains(rect) || rectAnchorView.intersect(rect)) {
-                builder.anchorView.setClickable(false);
-                builder.anchorView.postDelayed(new Runnable() {
-                    @Override
-                    public void run() {
-                        builder.anchorView.setClickable(true);
-                    }
-                }, 50);
-            }
+        if (view != overlay) {
+            // touches inside the popup window
+            return false;
+        }
+
+        if (event.getAction() == MotionEvent.ACTION_DOWN) {
+            onOutsideTouch((int) event.getX(), (int) event.getY());
         }
         return false;
     }
 
+    void onOutsideTouch(int x, int y) {
+        if (hidden || !builder.dismissOutsideTouch) {
+            return;
+        }
+        if (listener != null) {
+            listener.onClickedOutsideTooltip(this);
+        }
+        dismissReason = TooltipEvents.REASON_OUTSIDE_TOUCH;
+        remove();
+
+        if (anchor.isViewAnchor() && isTouchOnAnchor(x, y)) {
+            anchorView.setClickable(false);
+            anchorView.postDelayed(restoreAnchorClickable, 50);
+        }
+    }
+
+    @Override
+    public boolean onHover(View view, MotionEvent event) {
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_HOVER_ENTER:
+                pauseDuration();
+                break;
+            case MotionEvent.ACTION_HOVER_EXIT:
+                resumeDuration();
+                break;
+        }
+        return false;
+    }
+
+    /**
+     * Whether a touch at the given point lands on the anchor view.
+     */
+    boolean isTouchOnAnchor(int x, int y) {
+        return rectAnchorView.intersects(x, y, x + SIZE_TOUCH, y + SIZE_TOUCH);
+    }
+
 
     @Override
     public void onDismiss() {
+        boolean traced = TooltipTrace.begin(TooltipTrace.DISMISS);
+        if (listBinding != null) {
+            // before the timer is cancelled, as unbinding shows the tool tip again
+            listBinding.unbind();
+        }
+        showingTooltips.remove(this);
+        if (timer != null) {
+            timer.cancel(timeout);
+        }
+        if (events != null) {
+            events.record(TooltipEvents.TYPE_DISMISSED, builder.id, dismissReason,
+                    SystemClock.uptimeMillis() - shownAt);
+        }
+        dismissReason = TooltipEvents.REASON_OTHER;
+        if (anchor.isViewAnchor() && anchorView.getTag() == this) {
+            anchorView.setTag(null);
+        }
         if (rootView != null && overlay != null) {
             rootView.removeView(overlay);
         }
+        if (debugOverlay != null) {
+            ((ViewGroup) debugOverlay.getParent()).removeView(debugOverlay);
+            debugOverlay = null;
+        }
+        TooltipTrace.end(traced);
     }
 
     public interface OnToolTipListener {
@@ -107,32 +265,126 @@ public class Tooltip implements ViewTreeObserver.OnPreDrawListener, View.OnClick
         void onClickedOutsideTooltip(Tooltip tooltip);
     }
 
+    /**
+     * Loads a font that is not ready right away, e.g. a downloadable font or a font file.
+     */
+    public interface FontLoader {
+        /**
+         * Called on a background thread.
+         *
+         * @return the font, or null if it could not be loaded
+         */
+        @WorkerThread
+        @Nullable
+        Typeface load(@NonNull Context context);
+    }
+
+    public interface OnShowTimeoutListener {
+        /**
+         * Called when the anchor of a tool tip shown with
+         * {@link #showWhenReady(long, OnShowTimeoutListener)} did not get ready in time. The tool
+         * tip is not shown.
+         */
+        void onShowTimeout(Tooltip tooltip);
+    }
+
+    /**
+     * No spotlight, the screen is not dimmed.
+     */
+    public static final int SPOTLIGHT_NONE = 0;
+    public static final int SPOTLIGHT_RECT = 1;
+    public static final int SPOTLIGHT_ROUND_RECT = 2;
+    public static final int SPOTLIGHT_CIRCLE = 3;
+
     private static final int GRAVITY_START = 0x00800003;
     private static final int GRAVITY_END = 0x00800005;
 
     private static final long ANIMATION_DURATION = 00L;
 
-    private final View anchorView;
+    private static final float ICON_SIZE_DP = 24.0F;
+    private static final float IMAGE_MAX_HEIGHT_DP = 160.0F;
+    private static final float IMAGE_PADDING_DP = 8.0F;
+
+    private Anchor anchor;
+    private View anchorView;
     private int gravity;
 
     private final LinearLayout container;
-    private final View viewTooltip;
+    private View viewTooltip;
     private final ImageView arrow;
 
     private Builder builder;
 
     private float pivotX;
     private float pivotY;
+    private boolean animate = true;
+
+    private long shownAt;
+
+    @Nullable
+    private Drawable icon;
+    @Nullable
+    private Drawable image;
+    private boolean imagesToDecode = false;
+    private int pendingImages = 0;
+    private boolean waitingForImages = false;
+
+    private final Runnable showAfterImageWait = new Runnable() {
+        @Override
+        public void run() {
+            waitingForImages = false;
+            showNow();
+        }
+    };
+    private boolean tagsAnchor = true;
+    private boolean hidden = false;
+    @Nullable
+    private TooltipListBinding listBinding;
+    private int dismissReason = TooltipEvents.REASON_OTHER;
+
+    private final BalancedWrap balancedWrap = new BalancedWrap();
+    // last balanced text and width, reused while both stay the same
+    @Nullable
+    private CharSequence balancedText;
+    private int balancedMaxWidth = -1;
+    private int balancedWidth;
+    private int balancePassCount = 0;
+
+    @Nullable
+    private AnchorWaiter anchorWaiter;
+
+    // style the placement depends on, built on first use
+    @Nullable
+    private float[] placementSpec;
+
+    @Nullable
+    private TooltipDebugOverlay debugOverlay;
+    /**
+     * Rule of the gravity fallback that rejected each gravity, for the debug overlay.
+     */
+    private final int[] gravityRejections = new int[4];
+    private final Rect debugRect = new Rect();
 
     @Nullable
     private OnToolTipListener listener;
 
-    private Tooltip(Builder builder) {
+    Tooltip(Builder builder, @Nullable PreparedTooltip prepared) {
         this.builder = builder;
-        this.anchorView = builder.anchorView;
+        this.anchor = builder.anchor;
+        this.anchorView = anchor.getView();
         this.gravity = builder.tooltipGravity;
+        this.profile = builder.profile != null ? builder.profile : getActiveProfile(builder.context);
 
-        if (builder.dismissOutsideTouch) {
+        if (builder.spotlight != SPOTLIGHT_NONE) {
+            // the overlay dims around the anchor, whatever the profile
+            rootView = (ViewGroup) anchorView.getRootView();
+            overlay = new SpotlightView(builder.context, builder.spotlight, builder.spotlightColor,
+                    builder.spotlightPadding);
+            overlay.setLayoutParams(new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+                    ViewGroup.LayoutParams.MATCH_PARENT));
+            overlay.setOnTouchListener(this);
+            rootView.addView(overlay);
+        } else if (builder.dismissOutsideTouch && profile.hasOverlay() && !profile.isInWindow()) {
 
             rootView = (ViewGroup) anchorView.getRootView();
             overlay = new View(builder.context);
@@ -146,13 +398,32 @@ public class Tooltip implements ViewTreeObserver.OnPreDrawListener, View.OnClick
         // TODO container should NOT capture all events
         container = new LinearLayout(builder.context);
         container.setOnClickListener(this);
+        if (builder.duration > 0L) {
+            container.setOnTouchListener(this);
+            container.setOnHoverListener(this);
+        }
 
         int backgroundColor = builder.backgroundColor;
 
-        viewTooltip = getViewTooltip(builder, backgroundColor);
+        viewTooltip = getViewTooltip(builder, backgroundColor, prepared);
+        if (builder.fontKey != null && hasTextContent()) {
+            loadFont();
+        }
 
-        rectAnchorView = getRectView(anchorView);
-        changeGravityToolTip();
+        updateAnchorRect();
+        PlacementMemo.Entry memo = null;
+        if (builder.context instanceof Activity) {
+            updateDisplayMetrics((Activity) builder.context);
+            memo = findPlacementMemo(getStatusBarHeight());
+        }
+        if (memo != null) {
+            // shown here before and nothing changed, same gravity
+            gravity = memo.gravity;
+        } else {
+            boolean traced = TooltipTrace.begin(TooltipTrace.GRAVITY);
+            changeGravityToolTip();
+            TooltipTrace.end(traced);
+        }
         if (builder.arrowDrawable == null) {
             builder.arrowDrawable = new ArrowDrawable(backgroundColor, gravity);
         }
@@ -185,22 +456,53 @@ public class Tooltip implements ViewTreeObserver.OnPreDrawListener, View.OnClick
                 container.addView(viewTooltip, new LinearLayout.LayoutParams(LinearLayout.LayoutParams.WRAP_CONTENT, LinearLayout.LayoutParams.WRAP_CONTENT));
                 break;
         }
+        applyElevation();
 
+        if (profile.isInWindow()) {
+            popupWindow = null;
+            return;
+        }
         popupWindow = new PopupWindow(container,
                 ViewGroup.LayoutParams.WRAP_CONTENT,
                 ViewGroup.LayoutParams.WRAP_CONTENT);
         popupWindow.setOnDismissListener(this);
         popupWindow.setClippingEnabled(false);
-        popupWindow.setAnimationStyle(android.R.style.Animation);
+        popupWindow.setAnimationStyle(profile.hasTransitions() ? android.R.style.Animation : 0);
+        if (builder.dismissOutsideTouch && overlay == null) {
+            popupWindow.setOutsideTouchable(true);
+            popupWindow.setTouchInterceptor(this);
+            // before Marshmallow, the popup window only calls the interceptor with a background
+            popupWindow.setBackgroundDrawable(new ColorDrawable(Color.TRANSPARENT));
+        }
 //        popupWindow.setBackgroundDrawable(builder.context.getResources().getDrawable(android.R.color.holo_blue_bright));
 
     }
 
-    private View getViewTooltip(Builder builder, int backgroundColor) {
+    private View getViewTooltip(Builder builder, int backgroundColor, @Nullable PreparedTooltip prepared) {
 
         View toolTip = null;
 
-        if (builder.viewTooltip == null) {
+        if (builder.viewTooltip == null && prepared != null && prepared.layout != null) {
+            StaticTextView text = new StaticTextView(builder.context, prepared);
+            text.setPadding((int) builder.leftPadding, (int) builder.topPadding,
+                    (int) builder.rightPadding, (int) builder.bottomPadding);
+            toolTip = text;
+
+        } else if (builder.viewTooltip == null && builder.maxHeight > 0.0F && builder.lines <= 0
+                && builder.textSize > 0.0F && builder.icon == null && builder.image == null) {
+            int horizontalPadding = (int) builder.leftPadding + (int) builder.rightPadding;
+            CharSequence txt = getText(builder);
+            ScrollingTextView text = new ScrollingTextView(builder.context, txt,
+                    PreparedTooltip.createPaint(builder.textSize, builder.textColor, builder.typeface, builder.typefaceStyle),
+                    PreparedTooltip.alignmentFromGravity(builder.textGravity),
+                    builder.context.getResources().getDisplayMetrics().widthPixels - horizontalPadding,
+                    (int) builder.maxHeight);
+            text.setPadding((int) builder.leftPadding, (int) builder.topPadding,
+                    (int) builder.rightPadding, (int) builder.bottomPadding);
+            text.setOnClickListener(this);
+            toolTip = text;
+
+        } else if (builder.viewTooltip == null) {
             TextView text = new TextView(builder.context);
             text.setPadding((int) builder.leftPadding, (int) builder.topPadding,
                     (int) builder.rightPadding, (int) builder.bottomPadding);
@@ -214,17 +516,196 @@ public class Tooltip implements ViewTreeObserver.OnPreDrawListener, View.OnClick
                 text.setEllipsize(TextUtils.TruncateAt.END);
             }
 
-            CharSequence txt = builder.text;
-            if (TextUtils.isEmpty(txt)) {
-                txt = builder.context.getString(builder.textResourceId);
+            setRichText(text, getText(builder));
+            if (builder.richText != null && TooltipRichText.getCached(builder.context, builder.richText) == null) {
+                loadRichText(text);
+            }
+            if (builder.icon != null || builder.image != null) {
+                loadImages(text);
             }
-            text.setText(txt);
             toolTip = text;
 
         } else {
             toolTip = builder.viewTooltip;
         }
 
+        applyBackground(toolTip, backgroundColor);
+        return toolTip;
+    }
+
+    private static CharSequence getText(Builder builder) {
+        if (builder.richText != null) {
+            CharSequence parsed = TooltipRichText.getCached(builder.context, builder.richText);
+            return parsed != null ? parsed : TooltipRichText.stripMarkup(builder.richText);
+        }
+        if (TextUtils.isEmpty(builder.text)) {
+            return builder.context.getString(builder.textResourceId);
+        }
+        return builder.text;
+    }
+
+    /**
+     * Shows the rich text without markup until it is parsed.
+     */
+    private void loadRichText(final TextView text) {
+        TooltipRichText.load(builder.context, builder.richText, new TooltipRichText.Callback() {
+            @Override
+            public void onParsed(@NonNull CharSequence parsed) {
+                setRichText(text, parsed);
+                onContentChanged();
+            }
+        });
+    }
+
+    /**
+     * Sets the text, with its links clickable. The text view itself stays unclickable: touches
+     * outside of links still go to the tool tip.
+     */
+    private static void setRichText(TextView text, CharSequence parsed) {
+        if (TooltipRichText.hasLinks(parsed) && !(text.getMovementMethod() instanceof LinkMovementMethod)) {
+            text.setMovementMethod(LinkMovementMethod.getInstance());
+            text.setClickable(false);
+            text.setLongClickable(false);
+            text.setFocusable(false);
+        }
+        text.setText(parsed);
+    }
+
+    /**
+     * Shows placeholders for the icon and the image until they are {@link #decodeImages() decoded}.
+     * The icon goes before the text, the image above it.
+     */
+    private void loadImages(TextView text) {
+        DisplayMetrics metrics = builder.context.getResources().getDisplayMetrics();
+        int placeholderColor = (builder.textColor & 0x00FFFFFF) | 0x33000000;
+
+        if (builder.icon != null) {
+            int iconSize = (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, ICON_SIZE_DP, metrics);
+            icon = new ColorDrawable(placeholderColor);
+            icon.setBounds(0, 0, iconSize, iconSize);
+        }
+        if (builder.image != null) {
+            image = new ColorDrawable(placeholderColor);
+            setPlaceholderBounds(image, metrics.widthPixels - (int) builder.leftPadding - (int) builder.rightPadding);
+        }
+        text.setCompoundDrawablePadding((int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP,
+                IMAGE_PADDING_DP, metrics));
+        TextViewCompat.setCompoundDrawablesRelative(text, icon, image, null, null);
+        imagesToDecode = true;
+    }
+
+    /**
+     * Decodes the icon and the image off the UI thread, the image no wider than the text can be
+     * once placed. Done when first shown, as the anchor is laid out by then.
+     */
+    private void decodeImages() {
+        imagesToDecode = false;
+        final TextView text = (TextView) viewTooltip;
+        DisplayMetrics metrics = builder.context.getResources().getDisplayMetrics();
+        if (builder.icon != null) {
+            final int iconSize = (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, ICON_SIZE_DP, metrics);
+            pendingImages++;
+            TooltipImageLoader.load(builder.context, builder.icon, iconSize, iconSize,
+                    new TooltipImageLoader.Callback() {
+                        @Override
+                        public void onImageLoaded(@Nullable Bitmap bitmap) {
+                            icon = toDrawable(bitmap, builder.icon, iconSize, iconSize);
+                            onImageLoaded(text);
+                        }
+                    });
+        }
+        if (builder.image != null) {
+            final int imageWidth = getImageMaxWidth();
+            final int imageHeight = (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, IMAGE_MAX_HEIGHT_DP, metrics);
+            if (image instanceof ColorDrawable) {
+                setPlaceholderBounds(image, imageWidth);
+                TextViewCompat.setCompoundDrawablesRelative(text, icon, image, null, null);
+            }
+            pendingImages++;
+            TooltipImageLoader.load(builder.context, builder.image, imageWidth, imageHeight,
+                    new TooltipImageLoader.Callback() {
+                        @Override
+                        public void onImageLoaded(@Nullable Bitmap bitmap) {
+                            image = toDrawable(bitmap, builder.image, imageWidth, imageHeight);
+                            onImageLoaded(text);
+                        }
+                    });
+        }
+    }
+
+    /**
+     * 16:9 until the image is decoded.
+     */
+    private void setPlaceholderBounds(Drawable placeholder, int maxWidth) {
+        int maxHeight = (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, IMAGE_MAX_HEIGHT_DP,
+                builder.context.getResources().getDisplayMetrics());
+        int width = Math.min(maxWidth, maxHeight * 16 / 9);
+        placeholder.setBounds(0, 0, width, width * 9 / 16);
+    }
+
+    /**
+     * Returns the widest the image can be drawn: the text padded inside the width of the display
+     * for {@link Gravity#TOP} and {@link Gravity#BOTTOM}, inside the room beside the anchor for
+     * {@link Gravity#LEFT} and {@link Gravity#RIGHT}, as {@link Placement#placeSideHorizontal}
+     * leaves it.
+     */
+    private int getImageMaxWidth() {
+        if (builder.context instanceof Activity) {
+            updateDisplayMetrics((Activity) builder.context);
+        }
+        updateAnchorRect();
+        int displayWidth = displayMetrics.widthPixels > 0
+                ? displayMetrics.widthPixels : builder.context.getResources().getDisplayMetrics().widthPixels;
+        int room = displayWidth;
+        if (gravity == Gravity.LEFT) {
+            room = rectAnchorView.left - (int) builder.toolTipMargin - (int) builder.arrowWidth;
+        } else if (gravity == Gravity.RIGHT) {
+            room = displayWidth - rectAnchorView.right - (int) builder.toolTipMargin - (int) builder.arrowWidth;
+        }
+        return Math.max(1, room - (int) builder.leftPadding - (int) builder.rightPadding);
+    }
+
+    int getPendingImageCount() {
+        return pendingImages;
+    }
+
+    private void onImageLoaded(TextView text) {
+        pendingImages--;
+        TextViewCompat.setCompoundDrawablesRelative(text, icon, image, null, null);
+        if (pendingImages == 0 && waitingForImages) {
+            anchorView.removeCallbacks(showAfterImageWait);
+            showAfterImageWait.run();
+        } else {
+            onContentChanged();
+        }
+    }
+
+    /**
+     * Wraps a decoded image. Resources that are not bitmaps, like vector drawables, cannot be
+     * decoded and are inflated instead.
+     */
+    @Nullable
+    private Drawable toDrawable(@Nullable Bitmap bitmap, Object source, int width, int height) {
+        Drawable drawable;
+        if (bitmap != null) {
+            drawable = new BitmapDrawable(builder.context.getResources(), bitmap);
+        } else if (source instanceof Integer) {
+            drawable = ContextCompat.getDrawable(builder.context, (Integer) source);
+        } else {
+            return null;
+        }
+        int intrinsicWidth = drawable.getIntrinsicWidth();
+        int intrinsicHeight = drawable.getIntrinsicHeight();
+        if (intrinsicWidth <= 0 || intrinsicHeight <= 0) {
+            drawable.setBounds(0, 0, width, height);
+        } else {
+            float scale = Math.min(1.0F, Math.min((float) width / intrinsicWidth, (float) height / intrinsicHeight));
+            drawable.setBounds(0, 0, Math.round(intrinsicWidth * scale), Math.round(intrinsicHeight * scale));
+        }
+        return drawable;
+    }
+
+    private void applyBackground(View toolTip, int backgroundColor) {
         float radius = builder.radius;
         if (radius > 0.0F) {
             GradientDrawable drawable = new GradientDrawable();
@@ -237,20 +718,359 @@ public class Tooltip implements ViewTreeObserver.OnPreDrawListener, View.OnClick
         } else {
             toolTip.setBackgroundColor(backgroundColor);
         }
+    }
 
-        return toolTip;
+    /**
+     * Casts hardware shadows under the bubble, whose outline comes from its background, and
+     * under the arrow, whose outline is the arrow path. No shadow before Lollipop.
+     */
+    private void applyElevation() {
+        float elevation = builder.elevation;
+        if (elevation <= 0.0F || !profile.hasShadows() || Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return;
+        }
+        // room for the shadows, which are drawn outside of the bubble and the arrow
+        int inset = (int) Math.ceil(elevation);
+        container.setPadding(inset, inset, inset, inset * 2);
+        container.setClipToPadding(false);
+
+        viewTooltip.setElevation(elevation);
+        arrow.setElevation(elevation);
+        arrow.setOutlineProvider(new ArrowDrawable.ImageOutlineProvider());
+    }
+
+    /**
+     * Changes the text of a tool tip built with text content. The tool tip is moved only if its
+     * size changes.
+     *
+     * @throws IllegalStateException if the tool tip has a custom view
+     */
+    @UiThread
+    public void setText(CharSequence text) {
+        if (builder.viewTooltip != null || !hasTextContent()) {
+            throw new IllegalStateException("setText() requires a tooltip with text content");
+        }
+        if (viewTooltip instanceof TextContentView) {
+            TextContentView textView = (TextContentView) viewTooltip;
+            if (TextUtils.equals(textView.getText(), text)) {
+                return;
+            }
+            textView.setText(text);
+        } else {
+            TextView textView = (TextView) viewTooltip;
+            if (TextUtils.equals(textView.getText(), text)) {
+                return;
+            }
+            textView.setText(text);
+        }
+        builder.text = text;
+        onContentChanged();
+    }
+
+    /**
+     * Changes the text of a tool tip built with text content. The tool tip is moved only if its
+     * size changes.
+     *
+     * @throws IllegalStateException if the tool tip has a custom view
+     */
+    @UiThread
+    public void setText(@StringRes int text) {
+        setText(builder.context.getString(text));
+    }
+
+    /**
+     * Changes the background color of the tool tip and of its default arrow, without
+     * rebuilding any view.
+     */
+    @UiThread
+    public void setBackgroundColor(@ColorInt int backgroundColor) {
+        if (builder.backgroundColor == backgroundColor) {
+            return;
+        }
+        builder.backgroundColor = backgroundColor;
+
+        Drawable background = viewTooltip.getBackground();
+        if (background instanceof GradientDrawable) {
+            ((GradientDrawable) background).setColor(backgroundColor);
+        } else {
+            viewTooltip.setBackgroundColor(backgroundColor);
+        }
+        if (builder.arrowDrawable instanceof ArrowDrawable) {
+            ((ArrowDrawable) builder.arrowDrawable).setColor(backgroundColor);
+        }
+    }
+
+    /**
+     * Replaces the content of the tool tip with a custom view. The tool tip is moved only if its
+     * size changes.
+     */
+    @UiThread
+    public void setContent(@NonNull View content) {
+        if (content == viewTooltip) {
+            return;
+        }
+        int index = container.indexOfChild(viewTooltip);
+        container.removeViewAt(index);
+        applyBackground(content, builder.backgroundColor);
+        container.addView(content, index, new LinearLayout.LayoutParams(LinearLayout.LayoutParams.WRAP_CONTENT, LinearLayout.LayoutParams.WRAP_CONTENT));
+        viewTooltip = content;
+        builder.viewTooltip = content;
+        appliedContentMaxWidth = -1;
+        onContentChanged();
+    }
+
+    /**
+     * Whether the content is the built-in text view, as opposed to a custom view.
+     */
+    private boolean hasTextContent() {
+        return viewTooltip instanceof TextView || viewTooltip instanceof TextContentView;
+    }
+
+    /**
+     * Shows the text with the typeface of the builder until the font is loaded, then swaps it in.
+     */
+    private void loadFont() {
+        TooltipFonts.load(builder.context, builder.fontKey, builder.fontLoader, new TooltipFonts.Callback() {
+            @Override
+            public void onFontLoaded(@Nullable Typeface typeface) {
+                if (typeface != null) {
+                    swapTypeface(builder.typefaceStyle > 0 ? Typeface.create(typeface, builder.typefaceStyle) : typeface);
+                }
+            }
+        });
+    }
+
+    private void swapTypeface(Typeface typeface) {
+        TextPaint paint = viewTooltip instanceof TextContentView
+                ? ((TextContentView) viewTooltip).getPaint() : ((TextView) viewTooltip).getPaint();
+        CharSequence text = viewTooltip instanceof TextContentView
+                ? ((TextContentView) viewTooltip).getText() : ((TextView) viewTooltip).getText();
+        Paint.FontMetricsInt fallbackMetrics = paint.getFontMetricsInt();
+        float fallbackWidth = paint.measureText(text, 0, text.length());
+        Typeface fallback = paint.getTypeface();
+        paint.setTypeface(typeface);
+        Paint.FontMetricsInt metrics = paint.getFontMetricsInt();
+        boolean relayout = metrics.top != fallbackMetrics.top || metrics.ascent != fallbackMetrics.ascent
+                || metrics.descent != fallbackMetrics.descent || metrics.bottom != fallbackMetrics.bottom
+                || metrics.leading != fallbackMetrics.leading
+                || Math.abs(paint.measureText(text, 0, text.length()) - fallbackWidth) >= 0.5F;
+        paint.setTypeface(fallback);
+
+        if (viewTooltip instanceof TextContentView) {
+            ((TextContentView) viewTooltip).setTypeface(typeface, relayout);
+        } else if (relayout) {
+            ((TextView) viewTooltip).setTypeface(typeface);
+        } else {
+            // same metrics, keep the layout and only draw again
+            paint.setTypeface(typeface);
+            viewTooltip.invalidate();
+        }
+        if (relayout) {
+            onContentChanged();
+        }
+    }
+
+    private void setContentMaxWidth(int maxWidth) {
+        if (maxWidth == appliedContentMaxWidth) {
+            // TextView lays out again even when the max width stays the same
+            return;
+        }
+        appliedContentMaxWidth = maxWidth;
+        if (viewTooltip instanceof TextContentView) {
+            ((TextContentView) viewTooltip).setMaxWidth(maxWidth);
+        } else {
+            ((TextView) viewTooltip).setMaxWidth(maxWidth);
+        }
+    }
+
+    /**
+     * Returns the maximum width of the text content for side gravities: the room left by the
+     * placement or, with {@link Builder#withBalancedWrap(boolean)}, the narrowest width keeping
+     * the same line count.
+     */
+    private int getSideContentWidth(int maxContentWidth) {
+        // an image sets the width of the text by itself
+        if (!builder.balancedWrap || builder.lines > 0 || viewTooltip instanceof ScrollingTextView
+                || builder.image != null) {
+            balancedMaxWidth = -1;
+            return maxContentWidth;
+        }
+        CharSequence text;
+        TextPaint paint;
+        int padding;
+        if (viewTooltip instanceof StaticTextView) {
+            StaticTextView view = (StaticTextView) viewTooltip;
+            text = view.getText();
+            paint = view.getPaint();
+            padding = view.getPaddingLeft() + view.getPaddingRight();
+        } else {
+            TextView view = (TextView) viewTooltip;
+            text = view.getText();
+            paint = view.getPaint();
+            padding = view.getCompoundPaddingLeft() + view.getCompoundPaddingRight();
+        }
+        int maxTextWidth = maxContentWidth - padding;
+        if (text != balancedText || maxTextWidth != balancedMaxWidth) {
+            boolean traced = TooltipTrace.begin(TooltipTrace.BALANCE);
+            balancedWidth = balancedWrap.balance(text, paint, maxTextWidth);
+            balancePassCount = balancedWrap.getPassCount();
+            TooltipTrace.end(traced);
+            balancedText = text;
+            balancedMaxWidth = maxTextWidth;
+        }
+        return balancedWidth + padding;
+    }
+
+    private int getContentLineCount() {
+        if (viewTooltip instanceof StaticTextView) {
+            return ((StaticTextView) viewTooltip).getLineCount();
+        }
+        return ((TextView) viewTooltip).getLineCount();
+    }
+
+    /**
+     * Returns the number of line breaking passes the last balanced wrap took, at most
+     * {@link Builder#MAX_BALANCE_PASSES}, 0 if the tool tip has not been balanced. Passes are
+     * reused as long as the text and the room beside the anchor stay the same.
+     */
+    public int getBalancePassCount() {
+        return balancePassCount;
+    }
+
+    /**
+     * Re-runs the placement if the content of a showing tool tip no longer has the same size.
+     */
+    private void onContentChanged() {
+        if (!isShowing()) {
+            return;
+        }
+        int width = container.getMeasuredWidth();
+        int height = container.getMeasuredHeight();
+        container.measure(View.MeasureSpec.makeMeasureSpec(placement.displayWidth, View.MeasureSpec.AT_MOST),
+                View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+        if (container.getMeasuredWidth() != width || container.getMeasuredHeight() != height) {
+            updatePosition();
+        }
+    }
+
+    /**
+     * Reads the anchor bounds on screen into {@link #rectAnchorView}.
+     */
+    void updateAnchorRect() {
+        anchor.getBounds(rectAnchorView);
+    }
+
+    /**
+     * Points the tool tip at another anchor, keeping its gravity and content.
+     */
+    @UiThread
+    public void setAnchor(@NonNull Anchor anchor) {
+        if (this.anchor.isViewAnchor() && anchorView.getTag() == this) {
+            anchorView.setTag(null);
+        }
+        this.anchor = anchor;
+        this.anchorView = anchor.getView();
+        builder.anchor = anchor;
+        builder.anchorView = anchorView;
+        if (isShowing()) {
+            if (anchor.isViewAnchor() && tagsAnchor) {
+                anchorView.setTag(this);
+            }
+            updatePosition();
+        }
+    }
+
+    View getAnchorView() {
+        return anchorView;
     }
 
-    private Rect getRectView(View view) {
-        Rect rect = new Rect();
-        int[] screenLoc = new int[2];
-        view.getLocationOnScreen(screenLoc);
-        rect.left += screenLoc[0];
-        rect.right += screenLoc[0] + view.getWidth();
-        rect.top += screenLoc[1];
-        rect.bottom += screenLoc[1] + view.getHeight();
+    View getContentView() {
+        return viewTooltip;
+    }
 
-        return rect;
+    /**
+     * Whether the anchor view gets the tool tip as tag while it shows. Off for anchors that are
+     * recycled, whose tag belongs to whatever content they show next.
+     */
+    void setTagsAnchor(boolean tagsAnchor) {
+        this.tagsAnchor = tagsAnchor;
+        if (!tagsAnchor && anchor.isViewAnchor() && anchorView.getTag() == this) {
+            anchorView.setTag(null);
+        }
+    }
+
+    /**
+     * Sets the list binding to end when the tool tip is dismissed, ending the previous one.
+     */
+    void setListBinding(@NonNull TooltipListBinding listBinding) {
+        TooltipListBinding previous = this.listBinding;
+        this.listBinding = listBinding;
+        if (previous != null && previous != listBinding) {
+            previous.unbind();
+        }
+    }
+
+    void clearListBinding(@NonNull TooltipListBinding listBinding) {
+        if (this.listBinding == listBinding) {
+            this.listBinding = null;
+        }
+    }
+
+    /**
+     * Returns the bounds of the anchor in screen coordinates, as last read.
+     */
+    Rect getAnchorRect() {
+        return rectAnchorView;
+    }
+
+    /**
+     * Hides a showing tool tip without dismissing it, or shows it again. A hidden tool tip does
+     * not dismiss on outside touches and its duration is paused.
+     */
+    void setHidden(boolean hidden) {
+        if (this.hidden == hidden) {
+            return;
+        }
+        this.hidden = hidden;
+        container.setVisibility(hidden ? View.INVISIBLE : View.VISIBLE);
+        // let touches through to what is under the hidden tool tip
+        if (popupWindow != null) {
+            popupWindow.setTouchable(!hidden);
+            if (isShowing()) {
+                popupWindow.update();
+            }
+        }
+        if (overlay != null) {
+            overlay.setVisibility(hidden ? View.GONE : View.VISIBLE);
+        }
+        if (hidden) {
+            pauseDuration();
+        } else {
+            resumeDuration();
+        }
+    }
+
+    boolean isHidden() {
+        return hidden;
+    }
+
+    /**
+     * Points the tool tip at another view, keeping its gravity and content.
+     */
+    @UiThread
+    public void setAnchor(@NonNull View anchorView) {
+        setAnchor(Anchor.of(anchorView));
+    }
+
+    /**
+     * Re-reads the bounds of the anchor and moves the tool tip. Does not allocate, so it can
+     * follow a virtual anchor that moves on every frame.
+     */
+    @UiThread
+    public void updateAnchor() {
+        if (isShowing()) {
+            updatePosition();
+        }
     }
 
     /**
@@ -265,9 +1085,186 @@ public class Tooltip implements ViewTreeObserver.OnPreDrawListener, View.OnClick
      */
     @UiThread
     public void show() {
+        if (anchorWaiter != null) {
+            anchorWaiter.cancel();
+            anchorWaiter = null;
+        }
+        if (waitingForImages || isShowing()) {
+            return;
+        }
+        if (imagesToDecode) {
+            decodeImages();
+        }
+        if (pendingImages > 0 && builder.imageWait > 0L) {
+            waitingForImages = true;
+            anchorView.postDelayed(showAfterImageWait, builder.imageWait);
+            return;
+        }
+        showNow();
+    }
+
+    /**
+     * Shows the tool tip once its anchor is attached to a window and laid out, on the frame after
+     * that layout, instead of after an arbitrary delay. Shows right away if the anchor is ready.
+     *
+     * @param timeoutMillis how long to wait for the anchor, 0 for no limit
+     * @param listener      called if the anchor is not ready in time, may be null
+     */
+    @UiThread
+    public void showWhenReady(long timeoutMillis, @Nullable final OnShowTimeoutListener listener) {
+        if (anchorWaiter != null || isShowing()) {
+            return;
+        }
+        if (AnchorWaiter.isReady(anchorView)) {
+            show();
+            return;
+        }
+        anchorWaiter = new AnchorWaiter(anchorView, new AnchorWaiter.Callback() {
+            @Override
+            public void onAnchorReady() {
+                anchorWaiter = null;
+                show();
+            }
+
+            @Override
+            public void onAnchorTimeout() {
+                anchorWaiter = null;
+                if (listener != null) {
+                    listener.onShowTimeout(Tooltip.this);
+                }
+            }
+        });
+        anchorWaiter.start(timeoutMillis);
+    }
+
+    private void showNow() {
+        boolean traced = TooltipTrace.begin(TooltipTrace.SHOW);
+        if (overlay != null && rootView != anchorView.getRootView()) {
+            // built before the anchor was attached, move to its window
+            rootView.removeView(overlay);
+            rootView = (ViewGroup) anchorView.getRootView();
+            rootView.addView(overlay);
+        }
         container.getViewTreeObserver().addOnPreDrawListener(this);
-        popupWindow.showAsDropDown(container);
-        builder.anchorView.setTag(this);
+        // a new window, whatever it was moved to before
+        windowX = Integer.MIN_VALUE;
+        if (popupWindow != null) {
+            popupWindow.showAsDropDown(container);
+        } else {
+            layer = new TooltipLayer(builder.context, this);
+            layer.addView(container, new ViewGroup.LayoutParams(ViewGroup.LayoutParams.WRAP_CONTENT,
+                    ViewGroup.LayoutParams.WRAP_CONTENT));
+            ((ViewGroup) anchorView.getRootView()).addView(layer,
+                    new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+        }
+        if (anchor.isViewAnchor() && tagsAnchor) {
+            anchorView.setTag(this);
+        }
+        showingTooltips.add(this);
+        shownAt = SystemClock.uptimeMillis();
+        if (events != null) {
+            events.record(TooltipEvents.TYPE_SHOWN, builder.id, TooltipEvents.REASON_OTHER, 0L);
+        }
+        if (builder.duration > 0L) {
+            timer = TooltipTimer.forWindow(anchorView);
+            timer.schedule(timeout, builder.duration);
+        }
+        if (debugOverlayEnabled && debugOverlay == null) {
+            debugOverlay = new TooltipDebugOverlay(builder.context);
+            ((ViewGroup) anchorView.getRootView()).addView(debugOverlay,
+                    new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+        }
+        TooltipTrace.end(traced);
+    }
+
+    /**
+     * Stops the countdown of a tool tip built with {@link Builder#withDuration(long)}, until
+     * {@link #resumeDuration()}. Done automatically while the tool tip is touched or hovered.
+     */
+    @UiThread
+    public void pauseDuration() {
+        if (timer != null) {
+            timer.pause(timeout);
+        }
+    }
+
+    /**
+     * Resumes the countdown stopped by {@link #pauseDuration()}, leaving at least 1.5 seconds.
+     */
+    @UiThread
+    public void resumeDuration() {
+        if (timer != null) {
+            timer.resume(timeout, DURATION_AFTER_TOUCH);
+        }
+    }
+
+    /**
+     * Pushes back the dismissal of a timed tool tip so that at least the given time is left.
+     */
+    @UiThread
+    public void extendDuration(long milliSeconds) {
+        if (timer != null) {
+            timer.extend(timeout, milliSeconds);
+        }
+    }
+
+    /**
+     * Sends the shown, clicked and dismissed events of all tool tips to the given stream, which
+     * must be started. Null stops sending events.
+     */
+    @UiThread
+    public static void setEvents(@Nullable TooltipEvents events) {
+        Tooltip.events = events;
+    }
+
+    /**
+     * Returns the id given by {@link Builder#withId(String)}, or null.
+     */
+    @Nullable
+    public String getId() {
+        return builder.id;
+    }
+
+    /**
+     * Enables systrace sections around build, gravity resolution, measure, placement, show and
+     * dismiss of tool tips. Disabled sections cost nothing but a field read.
+     */
+    public static void setTraceEnabled(boolean enabled) {
+        TooltipTrace.enabled = enabled;
+    }
+
+    /**
+     * Draws, over the activity of each tool tip shown from now on, its anchor rect, the
+     * placement each gravity would get, labelled with the rule of the gravity fallback that
+     * rejected it, and the placement chosen. For debugging only.
+     */
+    public static void setDebugOverlayEnabled(boolean enabled) {
+        debugOverlayEnabled = enabled;
+    }
+
+    /**
+     * Returns how many placements were taken from the placement memo: tool tips shown again on
+     * an anchor whose bounds, display, text and style did not change since the last placement.
+     */
+    public static int getPlacementMemoHitCount() {
+        return PlacementMemo.getHitCount();
+    }
+
+    /**
+     * Returns how many placements were computed while they could have been memoized: first
+     * placements on an anchor, and placements after the anchor, the display or the content
+     * changed.
+     */
+    public static int getPlacementMemoMissCount() {
+        return PlacementMemo.getMissCount();
+    }
+
+    /**
+     * Forgets all memoized placements and resets the hit and miss counts.
+     */
+    @UiThread
+    public static void clearPlacementMemo() {
+        PlacementMemo.clear();
     }
 
     /**
@@ -277,11 +1274,85 @@ public class Tooltip implements ViewTreeObserver.OnPreDrawListener, View.OnClick
      */
 
     public boolean isShowing() {
-        return popupWindow.isShowing();
+        return popupWindow != null ? popupWindow.isShowing() : layer != null;
+    }
+
+    private void dismissWindow() {
+        if (popupWindow != null) {
+            popupWindow.dismiss();
+        } else if (layer != null) {
+            ((ViewGroup) layer.getParent()).removeView(layer);
+            layer.removeView(container);
+            layer = null;
+            onDismiss();
+        }
+    }
+
+    private void moveWindow(int x, int y, int width, int height) {
+        if (x == windowX && y == windowY && width == windowWidth && height == windowHeight) {
+            return;
+        }
+        windowX = x;
+        windowY = y;
+        windowWidth = width;
+        windowHeight = height;
+        if (popupWindow != null) {
+            popupWindow.update(x, y, width, height);
+        } else if (layer != null) {
+            layer.place(container, x, y);
+        }
+    }
+
+    /**
+     * Reads the display size into {@link #displayMetrics}. The window manager is only asked again
+     * after a configuration change, as the lookup allocates and crosses processes.
+     */
+    private void updateDisplayMetrics(Activity activity) {
+        Resources resources = activity.getResources();
+        Configuration configuration = resources.getConfiguration();
+        int densityDpi = resources.getDisplayMetrics().densityDpi;
+        if (configuration.screenWidthDp == displayWidthDp && configuration.screenHeightDp == displayHeightDp
+                && densityDpi == displayDensityDpi && configuration.orientation == displayOrientation) {
+            return;
+        }
+        activity.getWindowManager().getDefaultDisplay().getMetrics(displayMetrics);
+        displayWidthDp = configuration.screenWidthDp;
+        displayHeightDp = configuration.screenHeightDp;
+        displayDensityDpi = densityDpi;
+        displayOrientation = configuration.orientation;
+    }
+
+    /**
+     * Returns the rendering profile of this tool tip.
+     */
+    @NonNull
+    public TooltipProfile getProfile() {
+        return profile;
     }
 
     /**
-     * Shows the tool tip with the specified delay.
+     * Returns the rendering profile tool tips built now get, unless their builder sets one: the
+     * profile set by {@link #setProfile(TooltipProfile)}, or else the one
+     * {@link TooltipProfile#detect(Context) detected} from the device state, which is detected
+     * again only when battery saver or the animator duration scale change.
+     */
+    @NonNull
+    public static TooltipProfile getActiveProfile(@NonNull Context context) {
+        return profileOverride != null ? profileOverride : TooltipProfile.getDetected(context);
+    }
+
+    /**
+     * Sets the rendering profile of all tool tips built from now on. Null goes back to detecting
+     * it from the device state.
+     */
+    @UiThread
+    public static void setProfile(@Nullable TooltipProfile profile) {
+        profileOverride = profile;
+    }
+
+    /**
+     * Shows the tool tip with the specified delay. To wait for the anchor to be laid out, use
+     * {@link #showWhenReady(long, OnShowTimeoutListener)}.
      */
     public void showDelayed(long milliSeconds) {
         new Handler().postDelayed(new Runnable() {
@@ -292,22 +1363,94 @@ public class Tooltip implements ViewTreeObserver.OnPreDrawListener, View.OnClick
         }, milliSeconds);
     }
 
+    /**
+     * Saves the tool tips showing in the given activity so they can be restored with
+     * {@link #restoreState(Activity, Bundle, OnToolTipListener)} after a configuration change.
+     * <p/>
+     * Only tool tips with built-in text content and an anchor view that has an id are saved.
+     * Typefaces are saved as their family, set by {@link Builder#withFontFamily(String)}, or
+     * their style index. Fonts set by {@link Builder#withFontAsset(String)} are loaded again,
+     * fonts set by {@link Builder#withFont(String, FontLoader)} come back if they are still in the
+     * process cache. Other typefaces, e.g. created from a file, and arrow drawables are not saved.
+     */
+    public static void saveState(@NonNull Activity activity, @NonNull Bundle outState) {
+        View decorView = activity.getWindow().getDecorView();
+        ArrayList<Bundle> states = new ArrayList<Bundle>();
+        for (Tooltip tooltip : showingTooltips) {
+            int anchorId = tooltip.anchorView.getId();
+            if (!tooltip.isShowing() || !tooltip.anchor.isViewAnchor() || anchorId == View.NO_ID
+                    || tooltip.builder.viewTooltip != null
+                    || tooltip.anchorView.getRootView() != decorView) {
+                continue;
+            }
+            Bundle state = tooltip.builder.toBundle();
+            state.putInt(STATE_ANCHOR_ID, anchorId);
+            states.add(state);
+        }
+        outState.putParcelableArrayList(STATE_TOOLTIPS, states);
+    }
+
+    /**
+     * Restores the tool tips saved by {@link #saveState(Activity, Bundle)}. Each tool tip is built
+     * and shown, without animation, once its anchor view is attached to the window.
+     *
+     * @param listener set on every restored tool tip, may be null
+     */
+    @UiThread
+    public static void restoreState(@NonNull final Activity activity, @Nullable Bundle savedInstanceState,
+                                    @Nullable final OnToolTipListener listener) {
+        if (savedInstanceState == null) {
+            return;
+        }
+        ArrayList<Bundle> states = savedInstanceState.getParcelableArrayList(STATE_TOOLTIPS);
+        if (states == null) {
+            return;
+        }
+        for (final Bundle state : states) {
+            final View anchorView = activity.findViewById(state.getInt(STATE_ANCHOR_ID));
+            if (anchorView == null) {
+                continue;
+            }
+            anchorView.post(new Runnable() {
+                @Override
+                public void run() {
+                    Tooltip tooltip = new Builder(activity)
+                            .fromBundle(state)
+                            .withAnchor(anchorView)
+                            .build();
+                    tooltip.animate = false;
+                    tooltip.setOnToolTipClickedListener(listener);
+                    tooltip.show();
+                }
+            });
+        }
+    }
+
     /**
      * Removes the tool tip view from the view hierarchy.
      */
     @UiThread
     public void remove() {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB_MR1) {
+        if (anchorWaiter != null) {
+            anchorWaiter.cancel();
+            anchorWaiter = null;
+        }
+        if (waitingForImages) {
+            // not shown yet: images loaded from now on only update the content
+            waitingForImages = false;
+            anchorView.removeCallbacks(showAfterImageWait);
+            return;
+        }
+        if (dismissReason == TooltipEvents.REASON_OTHER) {
+            dismissReason = TooltipEvents.REASON_REMOVED;
+        }
+        if (!profile.hasTransitions()) {
+            dismissWindow();
+        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB_MR1) {
             container.setPivotX(pivotX);
             container.setPivotY(pivotY);
             container.animate().setDuration(ANIMATION_DURATION).alpha(0.0F).scaleX(0.0F).scaleY(0.0F)
-                    .setListener(new AnimatorListenerAdapter() {
-                        @Override
-                        public void onAnimationEnd(Animator animation) {
-                            popupWindow.dismiss();
-
-                        }
-                    });
+                    .setListener(dismissOnAnimationEnd);
         } else {
             AnimationSet animationSet = new AnimationSet(true);
             animationSet.setDuration(ANIMATION_DURATION);
@@ -321,7 +1464,7 @@ public class Tooltip implements ViewTreeObserver.OnPreDrawListener, View.OnClick
 
                 @Override
                 public void onAnimationEnd(Animation animation) {
-                    popupWindow.dismiss();
+                    dismissWindow();
                 }
 
                 @Override
@@ -333,144 +1476,319 @@ public class Tooltip implements ViewTreeObserver.OnPreDrawListener, View.OnClick
         }
     }
 
-    private int getStatusBarHeight() {
-        int result = 0;
-        int resourceId = builder.context.getResources().getIdentifier("status_bar_height", "dimen", "android");
-        if (resourceId > 0) {
-            result = builder.context.getResources().getDimensionPixelSize(resourceId);
+    private int getStatusBarHeight() {
+        return getStatusBarHeight(builder.context);
+    }
+
+    /**
+     * Returns the status bar height, looked up once per process and orientation.
+     */
+    private static int getStatusBarHeight(Context context) {
+        Resources resources = context.getResources();
+        int orientation = resources.getConfiguration().orientation;
+        if (orientation < 0 || orientation >= statusBarHeights.length) {
+            orientation = Configuration.ORIENTATION_UNDEFINED;
+        }
+        if (statusBarHeights[orientation] < 0) {
+            int result = 0;
+            int resourceId = resources.getIdentifier("status_bar_height", "dimen", "android");
+            if (resourceId > 0) {
+                result = resources.getDimensionPixelSize(resourceId);
+            }
+            statusBarHeights[orientation] = result;
+        }
+        return statusBarHeights[orientation];
+    }
+
+    /**
+     * Does, when the main thread is next idle, the one-time work that otherwise makes the first
+     * tool tip of the process slower than the next ones: class loading, resolution of the
+     * Tooltip styleable, typeface creation, status bar height lookup, and the first text layout
+     * and popup window.
+     */
+    @UiThread
+    public static void prewarm(@NonNull Activity activity) {
+        final WeakReference<Activity> activityRef = new WeakReference<Activity>(activity);
+        Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+            @Override
+            public boolean queueIdle() {
+                Activity activity = activityRef.get();
+                if (activity != null && !activity.isFinishing()) {
+                    prewarmNow(activity);
+                }
+                return false;
+            }
+        });
+    }
+
+    static void prewarmNow(Activity activity) {
+        getStatusBarHeight(activity);
+        if (prewarmed) {
+            return;
+        }
+        prewarmed = true;
+
+        TooltipProfile.getDetected(activity);
+
+        TypedArray a = activity.getTheme().obtainStyledAttributes(R.styleable.Tooltip);
+        a.recycle();
+
+        Builder.createTypeface("sans-serif", Typeface.NORMAL);
+        Builder.createTypeface("sans-serif", Typeface.BOLD);
+
+        TextView text = new TextView(activity);
+        text.setText("Tooltip");
+        text.measure(View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED),
+                View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+        new ArrowDrawable(Color.BLACK, Gravity.BOTTOM);
+        new Placement();
+        new PopupWindow(new LinearLayout(activity),
+                ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT);
+    }
+
+    static boolean isPrewarmed() {
+        return prewarmed;
+    }
+
+    @Override
+    public boolean onPreDraw() {
+        container.getViewTreeObserver().removeOnPreDrawListener(this);
+
+        if (!updatePosition() || !animate || !profile.hasTransitions()) {
+            return false;
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB_MR1) {
+            container.setAlpha(0.0F);
+            container.setPivotX(pivotX);
+            container.setPivotY(pivotY);
+            container.setScaleX(0.0F);
+            container.setScaleY(0.0F);
+            container.animate().setDuration(ANIMATION_DURATION).scaleX(1.0F).scaleY(1.0F).alpha(1.0F);
+        } else {
+            AnimationSet animationSet = new AnimationSet(true);
+            animationSet.setDuration(ANIMATION_DURATION);
+            animationSet.addAnimation(new AlphaAnimation(0.0F, 1.0F));
+            animationSet.addAnimation(new ScaleAnimation(0.0F, 1.0F, 0.0F, 1.0F, pivotX, pivotY));
+            container.startAnimation(animationSet);
+        }
+
+        return false;
+    }
+
+    /**
+     * Re-reads the anchor and display geometry and moves the popup accordingly. Does not
+     * allocate once the tooltip is showing.
+     *
+     * @return false if the tooltip is not hosted by an activity
+     */
+    boolean updatePosition() {
+        boolean traced = TooltipTrace.begin(TooltipTrace.POSITION);
+        try {
+            return placePopup();
+        } finally {
+            TooltipTrace.end(traced);
         }
-        return result;
     }
 
-    @Override
-    public boolean onPreDraw() {
-        container.getViewTreeObserver().removeOnPreDrawListener(this);
-
+    private boolean placePopup() {
         Context context = container.getContext();
         if (!(context instanceof Activity)) {
             return false;
         }
-        DisplayMetrics displayMetrics = new DisplayMetrics();
-        ((Activity) context).getWindowManager().getDefaultDisplay().getMetrics(displayMetrics);
-        int displayWidth = displayMetrics.widthPixels;
-        int displayHeight = displayMetrics.heightPixels;
-        int displayTop = getStatusBarHeight();
-
-        int anchorTop = rectAnchorView.top;
-        int anchorLeft = rectAnchorView.left;
-        int anchorWidth = anchorView.getWidth();
-        int anchorHeight = anchorView.getHeight();
-
-        int textWidth = viewTooltip.getWidth();
-        //default height 1 line
-        int textHeight = viewTooltip.getHeight();
-        int arrowWidth = arrow.getWidth();
-        int arrowHeight = arrow.getHeight();
-
-
-        int widthMeasureSpec = View.MeasureSpec.makeMeasureSpec(displayWidth, View.MeasureSpec.AT_MOST);
-        int heightMeasureSpec = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
-
-        if (gravity == Gravity.TOP || gravity == Gravity.BOTTOM) {
-            int width = Math.max(textWidth, arrowWidth);
-            int height = textHeight + arrowHeight;
-
-            int leftPadding;
-            int topPadding;
+        updateDisplayMetrics((Activity) context);
+        updateAnchorRect();
+        placement.setDisplay(displayMetrics.widthPixels, displayMetrics.heightPixels, getStatusBarHeight());
+        placement.setAnchor(rectAnchorView);
+        if (overlay instanceof SpotlightView) {
+            ((SpotlightView) overlay).setHole(rectAnchorView);
+        }
 
-            if (gravity == Gravity.TOP) {
-                topPadding = anchorTop - height;
-            } else {
-                // gravity == Gravity.BOTTOM
-                topPadding = anchorTop + anchorHeight;
+        boolean memoizable = canMemoizePlacement();
+        if (memoizable) {
+            PlacementMemo.Entry memo = findPlacementMemo(placement.displayTop);
+            if (memo != null && memo.gravity == gravity) {
+                PlacementMemo.countHit();
+                applyPlacementMemo(memo);
+                return true;
             }
+            PlacementMemo.countMiss();
+        }
 
-            int anchorHorizontalCenter = anchorLeft + anchorWidth / 2;
-            int left = anchorHorizontalCenter - width / 2;
-            int right = left + width;
-            leftPadding = Math.max(0, right > displayWidth ? displayWidth - width : left);
+        int widthMeasureSpec = View.MeasureSpec.makeMeasureSpec(placement.displayWidth, View.MeasureSpec.AT_MOST);
+        int heightMeasureSpec = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
 
+        // measured rather than laid out sizes, so that content updated in place is placed right away
+        int textWidth = viewTooltip.getMeasuredWidth();
+        //default height 1 line
+        int textHeight = viewTooltip.getMeasuredHeight();
+        int arrowWidth = arrow.getMeasuredWidth();
+        int arrowHeight = arrow.getMeasuredHeight();
+        // the container is padded when it casts a shadow
+        int paddingLeft = container.getPaddingLeft();
+        int paddingTop = container.getPaddingTop();
 
-            ViewGroup.MarginLayoutParams layoutParams = (ViewGroup.MarginLayoutParams) arrow.getLayoutParams();
-            layoutParams.leftMargin = anchorHorizontalCenter - leftPadding - arrowWidth / 2;
-            arrow.setLayoutParams(layoutParams);
-            popupWindow.update(leftPadding, topPadding, container.getWidth(), container.getHeight());
+        ViewGroup.MarginLayoutParams layoutParams = (ViewGroup.MarginLayoutParams) arrow.getLayoutParams();
+        int contentMaxWidth = placement.maxContentWidth;
 
-            pivotX = width / 2;
-            pivotY = gravity == Gravity.TOP ? height : 0;
+        if (gravity == Gravity.TOP || gravity == Gravity.BOTTOM) {
+            boolean traced = TooltipTrace.begin(TooltipTrace.MEASURE);
+            container.measure(widthMeasureSpec, heightMeasureSpec);
+            TooltipTrace.end(traced);
+            textWidth = viewTooltip.getMeasuredWidth();
+            textHeight = viewTooltip.getMeasuredHeight();
+            placement.placeVertical(gravity, textWidth, textHeight, arrowWidth, arrowHeight);
+
+            setArrowMargin(layoutParams, placement.arrowMargin, 0);
+            moveWindow(placement.x - paddingLeft, placement.y - paddingTop,
+                    container.getMeasuredWidth(), container.getMeasuredHeight());
+            contentMaxWidth = -1;
         } else {
             // gravity == Gravity.LEFT || gravity == Gravity.RIGHT
+            int margin = (int) builder.toolTipMargin;
+            placement.placeSideHorizontal(gravity, textWidth, arrowWidth, margin);
 
-            int width = textWidth + arrowWidth;
-
-            int leftPadding;
-            int topPadding;
-            int rightPadding = 0;
-
-            if (gravity == Gravity.LEFT) {
-                leftPadding = Math.max(0, anchorLeft - width);
-                leftPadding += (int) builder.toolTipMargin;
-                rightPadding = displayWidth - anchorLeft;
-            } else {
-                // gravity == Gravity.RIGHT
-                leftPadding = anchorLeft + anchorWidth;
-                rightPadding = (int) builder.toolTipMargin;
-            }
-
-            if (viewTooltip instanceof TextView) {
-                TextView text = (TextView) viewTooltip;
-                text.setMaxWidth(displayWidth - rightPadding - leftPadding - arrowWidth);
+            if (hasTextContent()) {
+                contentMaxWidth = getSideContentWidth(placement.maxContentWidth);
+                setContentMaxWidth(contentMaxWidth);
+                boolean traced = TooltipTrace.begin(TooltipTrace.MEASURE);
                 viewTooltip.measure(widthMeasureSpec, heightMeasureSpec);
+                TooltipTrace.end(traced);
+                if (balancedMaxWidth >= 0 && balancedWidth < balancedMaxWidth
+                        && getContentLineCount() > balancedWrap.getLineCount()) {
+                    // spans made the text wider than estimated, give up balancing this text
+                    balancedWidth = balancedMaxWidth;
+                    contentMaxWidth = placement.maxContentWidth;
+                    setContentMaxWidth(contentMaxWidth);
+                    traced = TooltipTrace.begin(TooltipTrace.MEASURE);
+                    viewTooltip.measure(widthMeasureSpec, heightMeasureSpec);
+                    TooltipTrace.end(traced);
+                }
                 textHeight = viewTooltip.getMeasuredHeight(); // height multi line
             }
 
-            int height = Math.max(textHeight, arrowHeight);
+            boolean traced = TooltipTrace.begin(TooltipTrace.MEASURE);
+            container.measure(widthMeasureSpec, heightMeasureSpec);
+            TooltipTrace.end(traced);
+            int popupWidth = container.getMeasuredWidth();
+            int popupHeight = container.getMeasuredHeight();
+            placement.placeSideVertical(gravity, builder.arrowGravity, textHeight, arrowHeight,
+                    popupWidth - paddingLeft - container.getPaddingRight(), margin);
+            moveWindow(placement.x - paddingLeft, placement.y - paddingTop, popupWidth, popupHeight);
 
+            setArrowMargin(layoutParams, 0, placement.arrowMargin);
+        }
 
-            int anchorVerticalCenter = anchorTop + anchorHeight / 2;
-            int top = anchorVerticalCenter - height / 2;
-            int bottom = top + height;
+        pivotX = placement.pivotX + paddingLeft;
+        pivotY = placement.pivotY + paddingTop;
+
+        if (memoizable) {
+            PlacementMemo.Entry memo = PlacementMemo.obtain(builder.context, anchorView);
+            memo.setKey(rectAnchorView, placement.displayWidth, placement.displayHeight, placement.displayTop,
+                    getContentText(), getContentTypeface(), getPlacementSpec());
+            memo.gravity = gravity;
+            memo.x = placement.x;
+            memo.y = placement.y;
+            memo.width = container.getMeasuredWidth();
+            memo.height = container.getMeasuredHeight();
+            memo.arrowMargin = placement.arrowMargin;
+            memo.contentMaxWidth = contentMaxWidth;
+            memo.pivotX = placement.pivotX;
+            memo.pivotY = placement.pivotY;
+            memo.valid = true;
+        }
 
-            if (builder.arrowGravity == Gravity.TOP) {
-                top = anchorTop;
-                bottom = anchorTop + height;
-            } else if (builder.arrowGravity == Gravity.BOTTOM) {
-                top = anchorTop + anchorHeight - height;
-            }
+        if (debugOverlay != null) {
+            debugRect.set(placement.x, placement.y,
+                    placement.x + container.getMeasuredWidth(), placement.y + container.getMeasuredHeight());
+            debugOverlay.update(placement, builder.tooltipGravity, gravity, gravityRejections, debugRect,
+                    viewTooltip.getMeasuredWidth(), viewTooltip.getMeasuredHeight(), arrowWidth, arrowHeight,
+                    builder.arrowGravity, (int) builder.toolTipMargin);
+        }
+        return true;
+    }
 
+    /**
+     * Whether the placement can be memoized: built-in text content on a view anchor, without
+     * images, whose size would change once decoded, and without debug overlay, which shows the
+     * rules the gravity fallback applied and a memoized placement skips the fallback.
+     */
+    private boolean canMemoizePlacement() {
+        return anchor.isViewAnchor() && hasTextContent() && builder.viewTooltip == null
+                && builder.icon == null && builder.image == null && debugOverlay == null && !debugOverlayEnabled;
+    }
 
-            topPadding = Math.max(0, bottom > displayHeight ? displayHeight - height - (int) builder.toolTipMargin : top);
-            topPadding = Math.max(0, topPadding < displayTop ? displayTop + (int) builder.toolTipMargin : topPadding);
+    /**
+     * Looks the placement up in the memo, for the anchor rect in {@link #rectAnchorView} and the
+     * display in {@link #displayMetrics}.
+     */
+    @Nullable
+    private PlacementMemo.Entry findPlacementMemo(int displayTop) {
+        if (!canMemoizePlacement()) {
+            return null;
+        }
+        return PlacementMemo.find(anchorView, rectAnchorView, displayMetrics.widthPixels, displayMetrics.heightPixels,
+                displayTop, getContentText(), getContentTypeface(), getPlacementSpec());
+    }
 
-            container.measure(widthMeasureSpec, heightMeasureSpec);
-            int popupWidth = container.getMeasuredWidth();
-            int popupHeight = container.getMeasuredHeight();
-            popupWindow.update(leftPadding, topPadding, popupWidth, popupHeight);
+    private void applyPlacementMemo(PlacementMemo.Entry memo) {
+        ViewGroup.MarginLayoutParams layoutParams = (ViewGroup.MarginLayoutParams) arrow.getLayoutParams();
+        if (gravity == Gravity.TOP || gravity == Gravity.BOTTOM) {
+            setArrowMargin(layoutParams, memo.arrowMargin, 0);
+        } else {
+            setContentMaxWidth(memo.contentMaxWidth);
+            setArrowMargin(layoutParams, 0, memo.arrowMargin);
+        }
+        placement.x = memo.x;
+        placement.y = memo.y;
+        placement.arrowMargin = memo.arrowMargin;
+        placement.pivotX = memo.pivotX;
+        placement.pivotY = memo.pivotY;
+
+        int paddingLeft = container.getPaddingLeft();
+        int paddingTop = container.getPaddingTop();
+        moveWindow(memo.x - paddingLeft, memo.y - paddingTop, memo.width, memo.height);
+        pivotX = memo.pivotX + paddingLeft;
+        pivotY = memo.pivotY + paddingTop;
+    }
 
-            ViewGroup.MarginLayoutParams layoutParams = (ViewGroup.MarginLayoutParams) arrow.getLayoutParams();
-            layoutParams.topMargin = anchorVerticalCenter - topPadding - arrowHeight / 2;
-            arrow.setLayoutParams(layoutParams);
+    /**
+     * Moves the arrow along the bubble. Layout params are set again only if the margin moved, as
+     * that requests a layout.
+     */
+    private void setArrowMargin(ViewGroup.MarginLayoutParams layoutParams, int leftMargin, int topMargin) {
+        if (layoutParams.leftMargin == leftMargin && layoutParams.topMargin == topMargin) {
+            return;
+        }
+        layoutParams.leftMargin = leftMargin;
+        layoutParams.topMargin = topMargin;
+        arrow.setLayoutParams(layoutParams);
+    }
 
-            pivotX = gravity == Gravity.LEFT ? popupWidth : 0;
-            pivotY = anchorVerticalCenter - topPadding;
+    private CharSequence getContentText() {
+        if (viewTooltip instanceof TextContentView) {
+            return ((TextContentView) viewTooltip).getText();
         }
+        return ((TextView) viewTooltip).getText();
+    }
 
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB_MR1) {
-            container.setAlpha(0.0F);
-            container.setPivotX(pivotX);
-            container.setPivotY(pivotY);
-            container.setScaleX(0.0F);
-            container.setScaleY(0.0F);
-            container.animate().setDuration(ANIMATION_DURATION).scaleX(1.0F).scaleY(1.0F).alpha(1.0F);
-        } else {
-            AnimationSet animationSet = new AnimationSet(true);
-            animationSet.setDuration(ANIMATION_DURATION);
-            animationSet.addAnimation(new AlphaAnimation(0.0F, 1.0F));
-            animationSet.addAnimation(new ScaleAnimation(0.0F, 1.0F, 0.0F, 1.0F, pivotX, pivotY));
-            container.startAnimation(animationSet);
+    private Typeface getContentTypeface() {
+        if (viewTooltip instanceof TextContentView) {
+            return ((TextContentView) viewTooltip).getPaint().getTypeface();
         }
+        return ((TextView) viewTooltip).getTypeface();
+    }
 
-        return false;
+    private float[] getPlacementSpec() {
+        if (placementSpec == null) {
+            placementSpec = new float[]{
+                    builder.tooltipGravity, builder.arrowGravity, builder.arrowWidth, builder.arrowHeight,
+                    builder.toolTipMargin, builder.radius, builder.leftPadding, builder.topPadding,
+                    builder.rightPadding, builder.bottomPadding, builder.textSize, builder.typefaceStyle,
+                    builder.lines, builder.maxHeight, builder.balancedWrap ? 1.0F : 0.0F,
+                    profile.hasShadows() ? builder.elevation : 0.0F};
+        }
+        return placementSpec;
     }
 
     /**
@@ -482,20 +1800,24 @@ public class Tooltip implements ViewTreeObserver.OnPreDrawListener, View.OnClick
         if (!(context instanceof Activity)) {
             return;
         }
-        DisplayMetrics displayMetrics = new DisplayMetrics();
-        ((Activity) context).getWindowManager().getDefaultDisplay().getMetrics(displayMetrics);
+        updateDisplayMetrics((Activity) context);
+        for (int i = 0; i < gravityRejections.length; i++) {
+            gravityRejections[i] = TooltipDebugOverlay.RULE_NONE;
+        }
         int displayHeight = displayMetrics.heightPixels;
         int displayWidth = displayMetrics.widthPixels;
         int displayTop = getStatusBarHeight();
 
         int anchorTop = rectAnchorView.top;
         int anchorLeft = rectAnchorView.left;
-        int anchorHeight = anchorView.getHeight();
-        int anchorWidth = anchorView.getWidth();
+        int anchorHeight = rectAnchorView.height();
+        int anchorWidth = rectAnchorView.width();
 
         int widthMeasureSpec = View.MeasureSpec.makeMeasureSpec(displayWidth, View.MeasureSpec.AT_MOST);
         int heightMeasureSpec = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
+        boolean traced = TooltipTrace.begin(TooltipTrace.MEASURE);
         viewTooltip.measure(widthMeasureSpec, heightMeasureSpec);
+        TooltipTrace.end(traced);
 
         int textHeight = viewTooltip.getMeasuredHeight(); // height multi line
         int heightToolTip = textHeight +  // with Gravity is Top and Bottom
@@ -514,25 +1836,25 @@ public class Tooltip implements ViewTreeObserver.OnPreDrawListener, View.OnClick
         switch (gravity) {
             case Gravity.LEFT:
 
-                if (!(viewTooltip instanceof TextView)) {
+                if (!hasTextContent()) {
                     if (anchorLeft < widthToolTip) {
                         if (anchorTop > heightToolTip) {
-                            gravity = Gravity.TOP;
+                            rejectGravity(TooltipDebugOverlay.RULE_NO_ROOM_LEFT, Gravity.TOP);
                         } else {
-                            gravity = Gravity.BOTTOM;
+                            rejectGravity(TooltipDebugOverlay.RULE_NO_ROOM_LEFT, Gravity.BOTTOM);
                         }
                     }
                 }
 
             case Gravity.RIGHT:
 
-                if (!(viewTooltip instanceof TextView)) {
+                if (!hasTextContent()) {
                     int anchorRight = anchorLeft + anchorWidth;
                     if (anchorRight + widthToolTip > displayWidth) {
                         if (anchorTop > heightToolTip) {
-                            gravity = Gravity.TOP;
+                            rejectGravity(TooltipDebugOverlay.RULE_NO_ROOM_RIGHT, Gravity.TOP);
                         } else {
-                            gravity = Gravity.BOTTOM;
+                            rejectGravity(TooltipDebugOverlay.RULE_NO_ROOM_RIGHT, Gravity.BOTTOM);
                         }
                     }
                 }
@@ -544,30 +1866,47 @@ public class Tooltip implements ViewTreeObserver.OnPreDrawListener, View.OnClick
                 int topArrow = anchorVerticalCenter - (int) builder.arrowHeight / 2;
                 if (bottomArrow + builder.radius + builder.toolTipMargin
                         > displayHeight) {
-                    gravity = Gravity.TOP;
+                    rejectGravity(TooltipDebugOverlay.RULE_ARROW_BELOW_DISPLAY, Gravity.TOP);
                 } else if (topArrow < getStatusBarHeight() + builder.radius
                         + builder.toolTipMargin) {
-                    gravity = Gravity.BOTTOM;
+                    rejectGravity(TooltipDebugOverlay.RULE_ARROW_ABOVE_DISPLAY, Gravity.BOTTOM);
                 }
                 break;
 
             case Gravity.TOP:
                 if (anchorTop - displayTop < heightToolTip) {
-                    gravity = Gravity.BOTTOM;
+                    rejectGravity(TooltipDebugOverlay.RULE_NO_ROOM_ABOVE, Gravity.BOTTOM);
                 }
                 break;
 
             case Gravity.BOTTOM:
                 int anchorBottom = displayHeight - (anchorTop + anchorHeight);
                 if (anchorBottom < heightToolTip) {
-                    gravity = Gravity.TOP;
+                    rejectGravity(TooltipDebugOverlay.RULE_NO_ROOM_BELOW, Gravity.TOP);
                 }
                 break;
         }
     }
 
+    /**
+     * Falls back from the current gravity, recording the rule that rejected it.
+     */
+    private void rejectGravity(int rule, int fallback) {
+        if (fallback == gravity) {
+            return;
+        }
+        int index = TooltipDebugOverlay.indexOf(gravity);
+        if (index >= 0) {
+            gravityRejections[index] = rule;
+        }
+        gravity = fallback;
+    }
+
     @Override
     public void onClick(View v) {
+        if (events != null) {
+            events.record(TooltipEvents.TYPE_CLICKED, builder.id, TooltipEvents.REASON_OTHER, 0L);
+        }
         if (listener != null) {
             listener.onToolTipClicked(this);
         }
@@ -580,9 +1919,52 @@ public class Tooltip implements ViewTreeObserver.OnPreDrawListener, View.OnClick
         private static final float DEFAULT_PADDING_TEXT = 15.0F;
         private static final float DEFAULT_ARROW_SIZE = 30.0F;
 
+        /**
+         * Maximum number of line breaking passes of {@link #withBalancedWrap(boolean)}.
+         */
+        public static final int MAX_BALANCE_PASSES = BalancedWrap.MAX_PASSES;
+        private static final int DEFAULT_SPOTLIGHT_COLOR = 0xB3000000;
+        private static final float DEFAULT_SPOTLIGHT_PADDING = 15.0F;
+
+        private static final HashMap<String, Typeface> typefaces = new HashMap<String, Typeface>();
+
+        private static final String STATE_TOOLTIP_GRAVITY = "tooltipGravity";
+        private static final String STATE_ARROW_GRAVITY = "arrowGravity";
+        private static final String STATE_TEXT_RESOURCE_ID = "textResourceId";
+        private static final String STATE_TEXT = "text";
+        private static final String STATE_TEXT_GRAVITY = "textGravity";
+        private static final String STATE_TEXT_COLOR = "textColor";
+        private static final String STATE_TEXT_SIZE = "textSize";
+        private static final String STATE_TYPEFACE = "typeface";
+        private static final String STATE_TYPEFACE_STYLE = "typefaceStyle";
+        private static final String STATE_LINES = "lines";
+        private static final String STATE_BACKGROUND_COLOR = "backgroundColor";
+        private static final String STATE_PADDING = "padding";
+        private static final String STATE_RADIUS = "radius";
+        private static final String STATE_ARROW_HEIGHT = "arrowHeight";
+        private static final String STATE_ARROW_WIDTH = "arrowWidth";
+        private static final String STATE_MARGIN = "toolTipMargin";
+        private static final String STATE_ELEVATION = "elevation";
+        private static final String STATE_DURATION = "duration";
+        private static final String STATE_MAX_HEIGHT = "maxHeight";
+        private static final String STATE_ID = "id";
+        private static final String STATE_ICON = "icon";
+        private static final String STATE_RICH_TEXT = "richText";
+        private static final String STATE_SPOTLIGHT = "spotlight";
+        private static final String STATE_BALANCED_WRAP = "balancedWrap";
+        private static final String STATE_FONT_ASSET = "fontAsset";
+        private static final String STATE_FONT_KEY = "fontKey";
+        private static final String STATE_FONT_FAMILY = "fontFamily";
+        private static final String STATE_SPOTLIGHT_COLOR = "spotlightColor";
+        private static final String STATE_SPOTLIGHT_PADDING = "spotlightPadding";
+        private static final String STATE_IMAGE = "image";
+        private static final String STATE_IMAGE_WAIT = "imageWait";
+        private static final String STATE_DISMISS_OUTSIDE_TOUCH = "dismissOutsideTouch";
+
         private final Context context;
 
         private View anchorView;
+        private Anchor anchor;
         private int tooltipGravity = Gravity.BOTTOM;
         private int arrowGravity = Gravity.CENTER;
         @StringRes
@@ -603,7 +1985,27 @@ public class Tooltip implements ViewTreeObserver.OnPreDrawListener, View.OnClick
         private float arrowHeight = DEFAULT_ARROW_SIZE;
         private float arrowWidth = DEFAULT_ARROW_SIZE;
         private float toolTipMargin = 0.0F;
+        private float elevation = 0.0F;
+        private long duration = 0L;
+        private float maxHeight = 0.0F;
+        private String id;
+        private String richText;
+        @Nullable
+        private TooltipProfile profile;
+        // drawable resource id or Uri
+        private Object icon;
+        private Object image;
+        private long imageWait = 0L;
         private boolean dismissOutsideTouch = true;
+        private int spotlight = SPOTLIGHT_NONE;
+        private boolean balancedWrap = false;
+        private String fontKey;
+        private FontLoader fontLoader;
+        private String fontAsset;
+        // family of the typeface, when it comes from one
+        private String fontFamily;
+        private int spotlightColor = DEFAULT_SPOTLIGHT_COLOR;
+        private float spotlightPadding = DEFAULT_SPOTLIGHT_PADDING;
 
         private Drawable arrowDrawable;
         private View viewTooltip;
@@ -616,6 +2018,54 @@ public class Tooltip implements ViewTreeObserver.OnPreDrawListener, View.OnClick
 
         }
 
+        /**
+         * Copies the attributes of another builder.
+         */
+        Builder(Builder other) {
+            context = other.context;
+            anchorView = other.anchorView;
+            anchor = other.anchor;
+            tooltipGravity = other.tooltipGravity;
+            arrowGravity = other.arrowGravity;
+            textResourceId = other.textResourceId;
+            text = other.text;
+            textGravity = other.textGravity;
+            textColor = other.textColor;
+            textSize = other.textSize;
+            typeface = other.typeface;
+            typefaceStyle = other.typefaceStyle;
+            lines = other.lines;
+            backgroundColor = other.backgroundColor;
+            leftPadding = other.leftPadding;
+            rightPadding = other.rightPadding;
+            topPadding = other.topPadding;
+            bottomPadding = other.bottomPadding;
+            radius = other.radius;
+            arrowHeight = other.arrowHeight;
+            arrowWidth = other.arrowWidth;
+            toolTipMargin = other.toolTipMargin;
+            elevation = other.elevation;
+            duration = other.duration;
+            maxHeight = other.maxHeight;
+            id = other.id;
+            richText = other.richText;
+            profile = other.profile;
+            icon = other.icon;
+            image = other.image;
+            imageWait = other.imageWait;
+            dismissOutsideTouch = other.dismissOutsideTouch;
+            spotlight = other.spotlight;
+            balancedWrap = other.balancedWrap;
+            fontKey = other.fontKey;
+            fontLoader = other.fontLoader;
+            fontAsset = other.fontAsset;
+            fontFamily = other.fontFamily;
+            spotlightColor = other.spotlightColor;
+            spotlightPadding = other.spotlightPadding;
+            arrowDrawable = other.arrowDrawable;
+            viewTooltip = other.viewTooltip;
+        }
+
         public Builder(Context context, @NonNull View anchorView, @StyleRes int resId) {
             this.context = context;
             this.anchorView = anchorView;
@@ -644,9 +2094,16 @@ public class Tooltip implements ViewTreeObserver.OnPreDrawListener, View.OnClick
             arrowDrawable = a.getDrawable(R.styleable.Tooltip_arrowDrawable);
             textResourceId = a.getResourceId(R.styleable.Tooltip_textResourceId, -1);
             dismissOutsideTouch = a.getBoolean(R.styleable.Tooltip_dismissOutsideTouch, true);
+            elevation = a.getDimension(R.styleable.Tooltip_tooltipElevation, 0.0F);
+            duration = a.getInt(R.styleable.Tooltip_tooltipDuration, 0);
+            maxHeight = a.getDimension(R.styleable.Tooltip_tooltipMaxHeight, 0.0F);
+            spotlight = a.getInt(R.styleable.Tooltip_tooltipSpotlight, SPOTLIGHT_NONE);
+            balancedWrap = a.getBoolean(R.styleable.Tooltip_tooltipBalancedWrap, false);
+            spotlightColor = a.getColor(R.styleable.Tooltip_tooltipSpotlightColor, DEFAULT_SPOTLIGHT_COLOR);
+            spotlightPadding = a.getDimension(R.styleable.Tooltip_tooltipSpotlightPadding, DEFAULT_SPOTLIGHT_PADDING);
 
             typefaceStyle = a.getInteger(R.styleable.Tooltip_android_textStyle, -1);
-            final String fontFamily = a.getString(R.styleable.Tooltip_android_fontFamily);
+            fontFamily = a.getString(R.styleable.Tooltip_android_fontFamily);
             final int typefaceIndex = a.getInt(R.styleable.Tooltip_android_typeface, -1);
             typeface = getTypefaceFromAttr(fontFamily, typefaceIndex, typefaceStyle);
 
@@ -654,10 +2111,10 @@ public class Tooltip implements ViewTreeObserver.OnPreDrawListener, View.OnClick
         }
 
 
-        private Typeface getTypefaceFromAttr(String familyName, int typefaceIndex, int styleIndex) {
+        private static Typeface getTypefaceFromAttr(String familyName, int typefaceIndex, int styleIndex) {
             Typeface tf = null;
             if (familyName != null) {
-                tf = Typeface.create(familyName, styleIndex);
+                tf = createTypeface(familyName, styleIndex);
                 if (tf != null) {
                     return tf;
                 }
@@ -676,6 +2133,131 @@ public class Tooltip implements ViewTreeObserver.OnPreDrawListener, View.OnClick
             return tf;
         }
 
+        /**
+         * Same as {@link Typeface#create(String, int)}, cached for the whole process.
+         */
+        static Typeface createTypeface(String familyName, int style) {
+            String key = familyName + '/' + style;
+            synchronized (typefaces) {
+                Typeface typeface = typefaces.get(key);
+                if (typeface == null) {
+                    typeface = Typeface.create(familyName, style);
+                    typefaces.put(key, typeface);
+                }
+                return typeface;
+            }
+        }
+
+        Bundle toBundle() {
+            Bundle state = new Bundle();
+            state.putInt(STATE_TOOLTIP_GRAVITY, tooltipGravity);
+            state.putInt(STATE_ARROW_GRAVITY, arrowGravity);
+            state.putInt(STATE_TEXT_RESOURCE_ID, textResourceId);
+            state.putCharSequence(STATE_TEXT, text);
+            state.putInt(STATE_TEXT_GRAVITY, textGravity);
+            state.putInt(STATE_TEXT_COLOR, textColor);
+            state.putFloat(STATE_TEXT_SIZE, textSize);
+            state.putInt(STATE_TYPEFACE, typefaceToIndex(typeface));
+            state.putInt(STATE_TYPEFACE_STYLE, typefaceStyle);
+            state.putInt(STATE_LINES, lines);
+            state.putInt(STATE_BACKGROUND_COLOR, backgroundColor);
+            state.putFloatArray(STATE_PADDING, new float[]{leftPadding, rightPadding, topPadding, bottomPadding});
+            state.putFloat(STATE_RADIUS, radius);
+            state.putFloat(STATE_ARROW_HEIGHT, arrowHeight);
+            state.putFloat(STATE_ARROW_WIDTH, arrowWidth);
+            state.putFloat(STATE_MARGIN, toolTipMargin);
+            state.putFloat(STATE_ELEVATION, elevation);
+            state.putLong(STATE_DURATION, duration);
+            state.putFloat(STATE_MAX_HEIGHT, maxHeight);
+            state.putString(STATE_ID, id);
+            state.putString(STATE_RICH_TEXT, richText);
+            putImageSource(state, STATE_ICON, icon);
+            putImageSource(state, STATE_IMAGE, image);
+            state.putLong(STATE_IMAGE_WAIT, imageWait);
+            state.putBoolean(STATE_DISMISS_OUTSIDE_TOUCH, dismissOutsideTouch);
+            state.putInt(STATE_SPOTLIGHT, spotlight);
+            state.putBoolean(STATE_BALANCED_WRAP, balancedWrap);
+            state.putString(STATE_FONT_ASSET, fontAsset);
+            state.putString(STATE_FONT_KEY, fontKey);
+            state.putString(STATE_FONT_FAMILY, fontFamily);
+            state.putInt(STATE_SPOTLIGHT_COLOR, spotlightColor);
+            state.putFloat(STATE_SPOTLIGHT_PADDING, spotlightPadding);
+            return state;
+        }
+
+        Builder fromBundle(Bundle state) {
+            tooltipGravity = state.getInt(STATE_TOOLTIP_GRAVITY, tooltipGravity);
+            arrowGravity = state.getInt(STATE_ARROW_GRAVITY, arrowGravity);
+            textResourceId = state.getInt(STATE_TEXT_RESOURCE_ID, textResourceId);
+            text = state.getCharSequence(STATE_TEXT);
+            textGravity = state.getInt(STATE_TEXT_GRAVITY, textGravity);
+            textColor = state.getInt(STATE_TEXT_COLOR, textColor);
+            textSize = state.getFloat(STATE_TEXT_SIZE, textSize);
+            typefaceStyle = state.getInt(STATE_TYPEFACE_STYLE, typefaceStyle);
+            fontFamily = state.getString(STATE_FONT_FAMILY);
+            typeface = getTypefaceFromAttr(fontFamily, state.getInt(STATE_TYPEFACE, 0), typefaceStyle);
+            if (typeface == null) {
+                typeface = Typeface.DEFAULT;
+            }
+            lines = state.getInt(STATE_LINES, lines);
+            backgroundColor = state.getInt(STATE_BACKGROUND_COLOR, backgroundColor);
+            float[] padding = state.getFloatArray(STATE_PADDING);
+            if (padding != null) {
+                leftPadding = padding[0];
+                rightPadding = padding[1];
+                topPadding = padding[2];
+                bottomPadding = padding[3];
+            }
+            radius = state.getFloat(STATE_RADIUS, radius);
+            arrowHeight = state.getFloat(STATE_ARROW_HEIGHT, arrowHeight);
+            arrowWidth = state.getFloat(STATE_ARROW_WIDTH, arrowWidth);
+            toolTipMargin = state.getFloat(STATE_MARGIN, toolTipMargin);
+            elevation = state.getFloat(STATE_ELEVATION, elevation);
+            duration = state.getLong(STATE_DURATION, duration);
+            maxHeight = state.getFloat(STATE_MAX_HEIGHT, maxHeight);
+            id = state.getString(STATE_ID);
+            richText = state.getString(STATE_RICH_TEXT);
+            icon = state.get(STATE_ICON);
+            image = state.get(STATE_IMAGE);
+            imageWait = state.getLong(STATE_IMAGE_WAIT, imageWait);
+            dismissOutsideTouch = state.getBoolean(STATE_DISMISS_OUTSIDE_TOUCH, dismissOutsideTouch);
+            spotlight = state.getInt(STATE_SPOTLIGHT, spotlight);
+            balancedWrap = state.getBoolean(STATE_BALANCED_WRAP, balancedWrap);
+            String asset = state.getString(STATE_FONT_ASSET);
+            String key = state.getString(STATE_FONT_KEY);
+            if (asset != null) {
+                withFontAsset(asset);
+            } else if (key != null) {
+                // the loader is not saved, but the font outlives the activity in the process cache
+                Typeface font = TooltipFonts.getCached(key);
+                if (font != null) {
+                    typeface = font;
+                }
+            }
+            spotlightColor = state.getInt(STATE_SPOTLIGHT_COLOR, spotlightColor);
+            spotlightPadding = state.getFloat(STATE_SPOTLIGHT_PADDING, spotlightPadding);
+            return this;
+        }
+
+        private static void putImageSource(Bundle state, String key, Object source) {
+            if (source instanceof Integer) {
+                state.putInt(key, (Integer) source);
+            } else if (source instanceof Uri) {
+                state.putParcelable(key, (Uri) source);
+            }
+        }
+
+        private static int typefaceToIndex(Typeface typeface) {
+            if (typeface == Typeface.SANS_SERIF) {
+                return 1;
+            } else if (typeface == Typeface.SERIF) {
+                return 2;
+            } else if (typeface == Typeface.MONOSPACE) {
+                return 3;
+            }
+            return 0;
+        }
+
         /**
          * Sets the text of the tool tip. If both the resource ID and the char sequence are set, the
          * char sequence will be used.
@@ -694,6 +2276,23 @@ public class Tooltip implements ViewTreeObserver.OnPreDrawListener, View.OnClick
             return this;
         }
 
+        /**
+         * Sets the text of the tool tip from HTML or markdown-like markup: {@code **bold**},
+         * {@code `code`} and {@code [text](url)}. The markup is parsed on a background thread,
+         * starting now, and cached by source and theme. Links open when tapped, other touches go
+         * to the tool tip. Takes precedence over {@link #withText(CharSequence)}.
+         */
+        public Builder withRichText(@NonNull String richText) {
+            this.richText = richText;
+            TooltipRichText.load(context, richText, new TooltipRichText.Callback() {
+                @Override
+                public void onParsed(@NonNull CharSequence text) {
+                    // parsed ahead of build(), nothing to do
+                }
+            });
+            return this;
+        }
+
         /**
          * Sets the text color for the tool tip. The default color is white.
          */
@@ -728,6 +2327,15 @@ public class Tooltip implements ViewTreeObserver.OnPreDrawListener, View.OnClick
         }
 
 
+        /**
+         * Sets the elevation in pixel of the tool tip, which casts a hardware shadow on Lollipop and
+         * above. The default value is 0, no shadow.
+         */
+        public Builder withElevation(float elevation) {
+            this.elevation = elevation;
+            return this;
+        }
+
         /**
          * Sets the arrow drawable for the tool tip. The default size is 13.
          */
@@ -742,10 +2350,51 @@ public class Tooltip implements ViewTreeObserver.OnPreDrawListener, View.OnClick
         public Builder withTypeface(Typeface typeface) {
             if (typeface != null) {
                 this.typeface = typeface;
+                this.fontFamily = null;
+            }
+            return this;
+        }
+
+        /**
+         * Sets the typeface for the tool tip from a font family name, e.g. "sans-serif-medium",
+         * which unlike a {@link Typeface} is kept by {@link Tooltip#saveState(Activity, Bundle)}.
+         */
+        public Builder withFontFamily(@NonNull String familyName) {
+            Typeface typeface = createTypeface(familyName, Typeface.NORMAL);
+            if (typeface != null) {
+                this.typeface = typeface;
+                this.fontFamily = familyName;
             }
             return this;
         }
 
+        /**
+         * Sets a font loaded off the UI thread and cached for the whole process under the given
+         * key. Until it is loaded, the tool tip shows with the typeface set by
+         * {@link #withTypeface(Typeface)}; the font is then swapped in, without laying the text
+         * out again if its metrics are the same.
+         */
+        public Builder withFont(@NonNull String key, @NonNull FontLoader loader) {
+            this.fontKey = key;
+            this.fontLoader = loader;
+            this.fontAsset = null;
+            return this;
+        }
+
+        /**
+         * Sets a font file of the app assets, loaded as {@link #withFont(String, FontLoader)}.
+         */
+        public Builder withFontAsset(@NonNull final String path) {
+            withFont("asset:" + path, new FontLoader() {
+                @Override
+                public Typeface load(@NonNull Context context) {
+                    return Typeface.createFromAsset(context.getAssets(), path);
+                }
+            });
+            this.fontAsset = path;
+            return this;
+        }
+
         /**
          * Sets the typeface style for the tool tip. The default value is {@link Typeface.NORMAL}.
          */
@@ -754,6 +2403,25 @@ public class Tooltip implements ViewTreeObserver.OnPreDrawListener, View.OnClick
             return this;
         }
 
+        /**
+         * Sets an id identifying the tool tip in {@link TooltipEvents}. The default value is null.
+         */
+        public Builder withId(String id) {
+            this.id = id;
+            return this;
+        }
+
+        /**
+         * Sets the maximum height in pixel of the text of the tool tip, padding included. Longer
+         * text scrolls, and only its visible lines are laid out and drawn. The text is drawn without
+         * its styling spans, rich text included. Ignored with {@link #withLines(int)} or a custom
+         * view. The default value is 0, no maximum.
+         */
+        public Builder withMaxHeight(float maxHeight) {
+            this.maxHeight = maxHeight;
+            return this;
+        }
+
         /**
          * Sets the exact lines for the tool tip. The default value is unset.
          */
@@ -797,6 +2465,54 @@ public class Tooltip implements ViewTreeObserver.OnPreDrawListener, View.OnClick
             return this;
         }
 
+        /**
+         * Dismisses the tool tip the given time after it is shown. The countdown stops while the
+         * tool tip is touched or hovered. The default value is 0, no timeout.
+         */
+        public Builder withDuration(long milliSeconds) {
+            this.duration = milliSeconds;
+            return this;
+        }
+
+        /**
+         * Dims the screen except for a hole around the anchor, shaped by one of
+         * {@link #SPOTLIGHT_RECT}, {@link #SPOTLIGHT_ROUND_RECT} or {@link #SPOTLIGHT_CIRCLE}. The
+         * hole slides when the anchor changes. The default value is {@link #SPOTLIGHT_NONE}.
+         */
+        public Builder withSpotlight(int shape) {
+            this.spotlight = shape;
+            return this;
+        }
+
+        /**
+         * Sets the color dimming the screen in spotlight mode. The default color is 70% black.
+         */
+        public Builder withSpotlightColor(@ColorInt int color) {
+            this.spotlightColor = color;
+            return this;
+        }
+
+        /**
+         * Sets the space in pixel between the anchor and the edge of the spotlight, which is also
+         * the corner radius of {@link #SPOTLIGHT_ROUND_RECT}. The default value is 15.
+         */
+        public Builder withSpotlightPadding(float padding) {
+            this.spotlightPadding = padding;
+            return this;
+        }
+
+        /**
+         * Wraps the text of {@link Gravity#LEFT} and {@link Gravity#RIGHT} tool tips at the
+         * narrowest width that keeps its line count, rather than at the room beside the anchor,
+         * for compact bubbles with lines of similar length. Takes at most
+         * {@link #MAX_BALANCE_PASSES} line breaking passes, without extra measure of the view
+         * unless the text has spans changing its width. The default value is false.
+         */
+        public Builder withBalancedWrap(boolean balancedWrap) {
+            this.balancedWrap = balancedWrap;
+            return this;
+        }
+
         /**
          * Sets the tooltip dismiss when touch outside. The default value is true.
          */
@@ -828,6 +2544,63 @@ public class Tooltip implements ViewTreeObserver.OnPreDrawListener, View.OnClick
         }
 
 
+        /**
+         * Sets the rendering profile of the tool tip, instead of the
+         * {@link Tooltip#getActiveProfile(Context) active profile}.
+         */
+        public Builder withProfile(@Nullable TooltipProfile profile) {
+            this.profile = profile;
+            return this;
+        }
+
+        /**
+         * Sets an icon shown before the text, decoded off the UI thread when the tool tip is first
+         * shown.
+         */
+        public Builder withIcon(@DrawableRes int icon) {
+            this.icon = icon;
+            return this;
+        }
+
+        /**
+         * Sets an icon shown before the text, decoded off the UI thread when the tool tip is first
+         * shown.
+         */
+        public Builder withIcon(@NonNull Uri icon) {
+            this.icon = icon;
+            return this;
+        }
+
+        /**
+         * Sets an image shown above the text, decoded off the UI thread when the tool tip is first
+         * shown, and downsampled to the width the text can take beside the anchor and a height of
+         * 160dp at most.
+         */
+        public Builder withImage(@DrawableRes int image) {
+            this.image = image;
+            return this;
+        }
+
+        /**
+         * Sets an image shown above the text, decoded off the UI thread when the tool tip is first
+         * shown, and downsampled to the width the text can take beside the anchor and a height of
+         * 160dp at most.
+         */
+        public Builder withImage(@NonNull Uri image) {
+            this.image = image;
+            return this;
+        }
+
+        /**
+         * Sets how long {@link Tooltip#show()} may wait for the icon and the image to be decoded.
+         * After that, the tool tip shows with placeholders, replaced as the images arrive. The
+         * default value is 0, show right away.
+         */
+        public Builder withImageWait(long milliSeconds) {
+            this.imageWait = milliSeconds;
+            return this;
+        }
+
         /**
          * Sets custom view tooltip.
          */
@@ -841,6 +2614,17 @@ public class Tooltip implements ViewTreeObserver.OnPreDrawListener, View.OnClick
          */
         public Builder withAnchor(View anchorView) {
             this.anchorView = anchorView;
+            this.anchor = null;
+            return this;
+        }
+
+        /**
+         * Sets the anchor the tool tip view will point at, either a view or a virtual region of a
+         * host view.
+         */
+        public Builder withAnchor(@NonNull Anchor anchor) {
+            this.anchorView = anchor.getView();
+            this.anchor = anchor;
             return this;
         }
 
@@ -848,6 +2632,61 @@ public class Tooltip implements ViewTreeObserver.OnPreDrawListener, View.OnClick
          * Creates a tool tip.
          */
         public Tooltip build() {
+            boolean traced = TooltipTrace.begin(TooltipTrace.BUILD);
+            try {
+                resolveGravity();
+                return new Tooltip(this, null);
+            } finally {
+                TooltipTrace.end(traced);
+            }
+        }
+
+        /**
+         * Resolves everything a tool tip needs except its views: style, text and text layout.
+         * Can be called on a background thread; {@link PreparedTooltip#attach()} then creates the
+         * tool tip on the UI thread, once. Changes made to this builder after prepare() do not
+         * affect the prepared tool tip.
+         * <p/>
+         * The text is laid out for the width of the display. Tool tips with a fixed line count
+         * ({@link #withLines(int)}), a maximum height ({@link #withMaxHeight(float)}) or a custom
+         * view only get their style resolved.
+         */
+        @WorkerThread
+        public PreparedTooltip prepare() {
+            checkGravity();
+
+            // the anchor is only read on the UI thread, by attach()
+            Builder spec = new Builder(this);
+            TextPaint paint = null;
+            if (viewTooltip == null) {
+                if (richText != null) {
+                    spec.text = TooltipRichText.parse(context, richText);
+                } else if (TextUtils.isEmpty(spec.text)) {
+                    spec.text = context.getString(textResourceId);
+                }
+                // links need a text view to be clicked
+                if (lines <= 0 && maxHeight <= 0.0F && icon == null && image == null && textSize > 0.0F
+                        && !TooltipRichText.hasLinks(spec.text)) {
+                    paint = PreparedTooltip.createPaint(textSize, textColor, typeface, typefaceStyle);
+                }
+            }
+
+            int horizontalPadding = (int) leftPadding + (int) rightPadding;
+            int verticalPadding = (int) topPadding + (int) bottomPadding;
+            int maxTextWidth = context.getResources().getDisplayMetrics().widthPixels - horizontalPadding;
+            return new PreparedTooltip(spec, spec.text, paint, textGravity, maxTextWidth,
+                    horizontalPadding, verticalPadding);
+        }
+
+        /**
+         * Resolves the anchor and start and end gravities, against the layout direction of the
+         * anchor. UI thread only.
+         */
+        void resolveGravity() {
+            checkGravity();
+            if (anchor == null) {
+                anchor = Anchor.of(anchorView);
+            }
             if (tooltipGravity == GRAVITY_START || tooltipGravity == GRAVITY_END) {
                 if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1
                         && anchorView.getLayoutDirection() == View.LAYOUT_DIRECTION_RTL) {
@@ -856,8 +2695,12 @@ public class Tooltip implements ViewTreeObserver.OnPreDrawListener, View.OnClick
                     tooltipGravity &= Gravity.HORIZONTAL_GRAVITY_MASK;
                 }
             }
+        }
+
+        private void checkGravity() {
             if (tooltipGravity != Gravity.TOP && tooltipGravity != Gravity.BOTTOM
-                    && tooltipGravity != Gravity.LEFT && tooltipGravity != Gravity.RIGHT) {
+                    && tooltipGravity != Gravity.LEFT && tooltipGravity != Gravity.RIGHT
+                    && tooltipGravity != GRAVITY_START && tooltipGravity != GRAVITY_END) {
                 throw new IllegalArgumentException("Unsupported tooltip gravity - " + tooltipGravity);
             }
 
@@ -865,8 +2708,6 @@ public class Tooltip implements ViewTreeObserver.OnPreDrawListener, View.OnClick
                     && arrowGravity != Gravity.BOTTOM) {
                 throw new IllegalArgumentException("Unsupported arrow gravity - " + arrowGravity);
             }
-
-            return new Tooltip(this);
         }
 
         /**
@@ -877,5 +2718,15 @@ public class Tooltip implements ViewTreeObserver.OnPreDrawListener, View.OnClick
             tooltip.show();
             return tooltip;
         }
+
+        /**
+         * Builds a {@link Tooltip} with builder attributes and
+         * {@link Tooltip#showWhenReady(long, OnShowTimeoutListener)}'s the tooltip.
+         */
+        public Tooltip showWhenReady(long timeoutMillis, @Nullable OnShowTimeoutListener listener) {
+            Tooltip tooltip = build();
+            tooltip.showWhenReady(timeoutMillis, listener);
+            return tooltip;
+        }
     }
 }
@@ -0,0 +1,339 @@
+/*
+ * Copyright (C) 2017 sonvp
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sonvp.tooltip;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.DisplayMetrics;
+import android.util.TypedValue;
+import android.view.View;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Tool tip definitions compiled ahead of time by {@code tooltip-catalog.gradle} from JSON or XML
+ * into a binary file, which is memory-mapped and never parsed as a whole: opening a catalog reads
+ * its header, looking a definition up binary-searches its index.
+ * <p/>
+ * File layout, big-endian:
+ * <pre>
+ * header   magic "TTCG", version, count, index offset, records offset, strings offset
+ * index    count x (id hash, id string), sorted by hash then id
+ * records  count x 64 bytes, in index order
+ * strings  length-prefixed UTF-8
+ * </pre>
+ * Sizes are stored in dp, text sizes in sp, and converted when a builder is created.
+ */
+public final class TooltipCatalog {
+
+    static final int MAGIC = 0x54544347; // "TTCG"
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 24;
+    static final int INDEX_ENTRY_SIZE = 8;
+    static final int RECORD_SIZE = 64;
+
+    // record fields, by offset
+    static final int FLAGS = 0;
+    static final int TEXT = 4;
+    static final int TARGET = 8;
+    static final int GRAVITY = 12;
+    static final int ARROW_GRAVITY = 16;
+    static final int TEXT_COLOR = 20;
+    static final int BACKGROUND_COLOR = 24;
+    static final int TEXT_SIZE = 28;
+    static final int RADIUS = 32;
+    static final int PADDING = 36;
+    static final int MARGIN = 40;
+    static final int ELEVATION = 44;
+    static final int DURATION = 48;
+    static final int TYPEFACE_STYLE = 52;
+    static final int MAX_HEIGHT = 56;
+
+    // which record fields are set, the others keep the builder defaults
+    static final int HAS_TEXT = 1;
+    static final int HAS_TARGET = 1 << 1;
+    static final int HAS_GRAVITY = 1 << 2;
+    static final int HAS_ARROW_GRAVITY = 1 << 3;
+    static final int HAS_TEXT_COLOR = 1 << 4;
+    static final int HAS_BACKGROUND_COLOR = 1 << 5;
+    static final int HAS_TEXT_SIZE = 1 << 6;
+    static final int HAS_RADIUS = 1 << 7;
+    static final int HAS_PADDING = 1 << 8;
+    static final int HAS_MARGIN = 1 << 9;
+    static final int HAS_ELEVATION = 1 << 10;
+    static final int HAS_DURATION = 1 << 11;
+    static final int HAS_TYPEFACE_STYLE = 1 << 12;
+    static final int HAS_MAX_HEIGHT = 1 << 13;
+
+    static final int NO_STRING = -1;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final ByteBuffer buffer;
+    private final int count;
+    private final int indexOffset;
+    private final int recordsOffset;
+    private final int stringsOffset;
+
+    private TooltipCatalog(ByteBuffer buffer) throws IOException {
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a tooltip catalog");
+        }
+        int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported tooltip catalog version - " + version);
+        }
+        this.buffer = buffer;
+        count = buffer.getInt(8);
+        indexOffset = buffer.getInt(12);
+        recordsOffset = buffer.getInt(16);
+        stringsOffset = buffer.getInt(20);
+        if (count < 0 || indexOffset + (long) count * INDEX_ENTRY_SIZE > buffer.limit()
+                || recordsOffset + (long) count * RECORD_SIZE > buffer.limit() || stringsOffset > buffer.limit()) {
+            throw new IOException("Truncated tooltip catalog");
+        }
+    }
+
+    /**
+     * Memory-maps a catalog file.
+     */
+    @NonNull
+    public static TooltipCatalog open(@NonNull File file) throws IOException {
+        FileInputStream input = new FileInputStream(file);
+        try {
+            FileChannel channel = input.getChannel();
+            return new TooltipCatalog(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            // the mapping stays valid once the channel is closed
+            input.close();
+        }
+    }
+
+    /**
+     * Memory-maps a catalog packaged as an asset. The asset must be stored uncompressed, which
+     * {@code tooltip-catalog.gradle} sets up; a compressed asset is read into memory instead.
+     */
+    @NonNull
+    public static TooltipCatalog openAsset(@NonNull Context context, @NonNull String assetName) throws IOException {
+        AssetManager assets = context.getAssets();
+        AssetFileDescriptor descriptor;
+        try {
+            descriptor = assets.openFd(assetName);
+        } catch (FileNotFoundException e) {
+            // compressed asset, no file descriptor to map
+            return new TooltipCatalog(ByteBuffer.wrap(readFully(assets.open(assetName))));
+        }
+        FileInputStream input = descriptor.createInputStream();
+        try {
+            return new TooltipCatalog(input.getChannel().map(FileChannel.MapMode.READ_ONLY,
+                    descriptor.getStartOffset(), descriptor.getLength()));
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Returns the number of definitions.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Whether the catalog has a definition for the given id.
+     */
+    public boolean contains(@NonNull String id) {
+        return find(id) >= 0;
+    }
+
+    /**
+     * Creates a builder set up from a definition, without anchor. The builder has the id of the
+     * definition.
+     *
+     * @return null if the catalog has no definition for the id
+     */
+    @Nullable
+    public Tooltip.Builder newBuilder(@NonNull Context context, @NonNull String id) {
+        int index = find(id);
+        if (index < 0) {
+            return null;
+        }
+        int record = recordsOffset + index * RECORD_SIZE;
+        int flags = buffer.getInt(record + FLAGS);
+        DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+
+        Tooltip.Builder builder = new Tooltip.Builder(context).withId(id);
+        if ((flags & HAS_TEXT) != 0) {
+            builder.withText(getString(buffer.getInt(record + TEXT)));
+        }
+        if ((flags & HAS_GRAVITY) != 0) {
+            builder.withTooltipGravity(buffer.getInt(record + GRAVITY));
+        }
+        if ((flags & HAS_ARROW_GRAVITY) != 0) {
+            builder.withArrowGravity(buffer.getInt(record + ARROW_GRAVITY));
+        }
+        if ((flags & HAS_TEXT_COLOR) != 0) {
+            builder.withTextColor(buffer.getInt(record + TEXT_COLOR));
+        }
+        if ((flags & HAS_BACKGROUND_COLOR) != 0) {
+            builder.withBackgroundColorInt(buffer.getInt(record + BACKGROUND_COLOR));
+        }
+        if ((flags & HAS_TEXT_SIZE) != 0) {
+            builder.withTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP,
+                    buffer.getFloat(record + TEXT_SIZE), metrics));
+        }
+        if ((flags & HAS_RADIUS) != 0) {
+            builder.withCornerRadius(dp(buffer.getFloat(record + RADIUS), metrics));
+        }
+        if ((flags & HAS_PADDING) != 0) {
+            int padding = (int) dp(buffer.getFloat(record + PADDING), metrics);
+            builder.withPadding(padding, padding, padding, padding);
+        }
+        if ((flags & HAS_MARGIN) != 0) {
+            builder.withToolTipMargin(dp(buffer.getFloat(record + MARGIN), metrics));
+        }
+        if ((flags & HAS_ELEVATION) != 0) {
+            builder.withElevation(dp(buffer.getFloat(record + ELEVATION), metrics));
+        }
+        if ((flags & HAS_DURATION) != 0) {
+            builder.withDuration(buffer.getInt(record + DURATION));
+        }
+        if ((flags & HAS_TYPEFACE_STYLE) != 0) {
+            builder.withTypefaceStyle(buffer.getInt(record + TYPEFACE_STYLE));
+        }
+        if ((flags & HAS_MAX_HEIGHT) != 0) {
+            builder.withMaxHeight(dp(buffer.getFloat(record + MAX_HEIGHT), metrics));
+        }
+        return builder;
+    }
+
+    /**
+     * Returns the view id the definition targets, resolved from its resource name.
+     *
+     * @return {@link View#NO_ID} if there is no such definition, target or id
+     */
+    public int getTargetId(@NonNull Context context, @NonNull String id) {
+        int index = find(id);
+        if (index < 0) {
+            return View.NO_ID;
+        }
+        int record = recordsOffset + index * RECORD_SIZE;
+        if ((buffer.getInt(record + FLAGS) & HAS_TARGET) == 0) {
+            return View.NO_ID;
+        }
+        int targetId = context.getResources().getIdentifier(getString(buffer.getInt(record + TARGET)),
+                "id", context.getPackageName());
+        return targetId != 0 ? targetId : View.NO_ID;
+    }
+
+    /**
+     * Binary-searches the index.
+     *
+     * @return the position of the definition, or -1
+     */
+    int find(String id) {
+        int hash = id.hashCode();
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int middleHash = buffer.getInt(indexOffset + middle * INDEX_ENTRY_SIZE);
+            if (middleHash < hash) {
+                low = middle + 1;
+            } else if (middleHash > hash) {
+                high = middle - 1;
+            } else {
+                return findInCollisions(middle, hash, id.getBytes(UTF_8));
+            }
+        }
+        return -1;
+    }
+
+    private int findInCollisions(int position, int hash, byte[] id) {
+        for (int i = position; i >= 0 && hashAt(i) == hash; i--) {
+            if (stringEquals(buffer.getInt(indexOffset + i * INDEX_ENTRY_SIZE + 4), id)) {
+                return i;
+            }
+        }
+        for (int i = position + 1; i < count && hashAt(i) == hash; i++) {
+            if (stringEquals(buffer.getInt(indexOffset + i * INDEX_ENTRY_SIZE + 4), id)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int hashAt(int position) {
+        return buffer.getInt(indexOffset + position * INDEX_ENTRY_SIZE);
+    }
+
+    private boolean stringEquals(int ref, byte[] bytes) {
+        int offset = stringsOffset + ref;
+        if (buffer.getInt(offset) != bytes.length) {
+            return false;
+        }
+        offset += 4;
+        for (int i = 0; i < bytes.length; i++) {
+            if (buffer.get(offset + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String getString(int ref) {
+        if (ref == NO_STRING) {
+            return null;
+        }
+        int offset = stringsOffset + ref;
+        byte[] bytes = new byte[buffer.getInt(offset)];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(offset + 4 + i);
+        }
+        return new String(bytes, UTF_8);
+    }
+
+    private static float dp(float value, DisplayMetrics metrics) {
+        return TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, value, metrics);
+    }
+
+    private static byte[] readFully(InputStream input) throws IOException {
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] chunk = new byte[8192];
+            int read;
+            while ((read = input.read(chunk)) != -1) {
+                output.write(chunk, 0, read);
+            }
+            return output.toByteArray();
+        } finally {
+            input.close();
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2017 sonvp
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sonvp.tooltip;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.view.Gravity;
+import android.view.View;
+
+/**
+ * Debug overlay drawn over the activity: the anchor rect, the popup rect each gravity would get,
+ * and the placement actually chosen.
+ * <p/>
+ * Each candidate is labelled with the rule of the gravity fallback that rejected it, if the
+ * fallback tried it at all. Labels are constants, nothing is allocated when the tool tip moves.
+ */
+final class TooltipDebugOverlay extends View {
+
+    static final int RULE_NONE = 0;
+    static final int RULE_NO_ROOM_LEFT = 1;
+    static final int RULE_NO_ROOM_RIGHT = 2;
+    static final int RULE_ARROW_BELOW_DISPLAY = 3;
+    static final int RULE_ARROW_ABOVE_DISPLAY = 4;
+    static final int RULE_NO_ROOM_ABOVE = 5;
+    static final int RULE_NO_ROOM_BELOW = 6;
+
+    private static final String[] RULE_LABELS = {
+            " not tried",
+            " rejected: no room left of the anchor",
+            " rejected: no room right of the anchor",
+            " rejected: arrow below the display",
+            " rejected: arrow under the status bar",
+            " rejected: no room above the anchor",
+            " rejected: no room below the anchor",
+    };
+    private static final String CHOSEN = " chosen";
+    private static final String ARROW = " -> ";
+
+    private static final int[] CANDIDATES = {Gravity.TOP, Gravity.BOTTOM, Gravity.LEFT, Gravity.RIGHT};
+    private static final String[] CANDIDATE_NAMES = {"TOP", "BOTTOM", "LEFT", "RIGHT"};
+
+    private static final int COLOR_ANCHOR = Color.argb(0x80, 0x00, 0x96, 0x88);
+    private static final int COLOR_CANDIDATE = Color.argb(0xC0, 0xFF, 0x98, 0x00);
+    private static final int COLOR_CHOSEN = Color.argb(0xFF, 0xE9, 0x1E, 0x63);
+
+    private final Paint strokePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Placement scratch = new Placement();
+    private final int[] location = new int[2];
+
+    private final Rect anchorRect = new Rect();
+    private final Rect chosenRect = new Rect();
+    private final Rect[] candidateRects = new Rect[CANDIDATES.length];
+    private final int[] candidateRules = new int[CANDIDATES.length];
+    private int requested = -1;
+    private int chosen = -1;
+
+    TooltipDebugOverlay(Context context) {
+        super(context);
+        float density = context.getResources().getDisplayMetrics().density;
+        strokePaint.setStyle(Paint.Style.STROKE);
+        strokePaint.setStrokeWidth(2.0F * density);
+        textPaint.setTextSize(11.0F * density);
+        for (int i = 0; i < CANDIDATES.length; i++) {
+            candidateRects[i] = new Rect();
+        }
+    }
+
+    /**
+     * Returns the index of a gravity in {@link #CANDIDATES}, or -1.
+     */
+    static int indexOf(int gravity) {
+        for (int i = 0; i < CANDIDATES.length; i++) {
+            if (CANDIDATES[i] == gravity) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Records a placement decision, all rects in screen coordinates.
+     *
+     * @param placement  the placement of the tool tip, display and anchor already set
+     * @param requested  gravity asked by the builder
+     * @param chosen     gravity used
+     * @param rejections rule that rejected each gravity, indexed like {@link #CANDIDATES}
+     * @param popupRect  rect of the popup as placed
+     */
+    void update(Placement placement, int requested, int chosen, int[] rejections, Rect popupRect,
+                int contentWidth, int contentHeight, int arrowWidth, int arrowHeight,
+                int arrowGravity, int margin) {
+        scratch.setDisplay(placement.displayWidth, placement.displayHeight, placement.displayTop);
+        scratch.anchorLeft = placement.anchorLeft;
+        scratch.anchorTop = placement.anchorTop;
+        scratch.anchorWidth = placement.anchorWidth;
+        scratch.anchorHeight = placement.anchorHeight;
+
+        anchorRect.set(placement.anchorLeft, placement.anchorTop,
+                placement.anchorLeft + placement.anchorWidth, placement.anchorTop + placement.anchorHeight);
+
+        for (int i = 0; i < CANDIDATES.length; i++) {
+            int gravity = CANDIDATES[i];
+            Rect rect = candidateRects[i];
+            if (gravity == Gravity.TOP || gravity == Gravity.BOTTOM) {
+                scratch.placeVertical(gravity, contentWidth, contentHeight, arrowWidth, arrowHeight);
+                rect.set(scratch.x, scratch.y, scratch.x + Math.max(contentWidth, arrowWidth),
+                        scratch.y + contentHeight + arrowHeight);
+            } else {
+                scratch.placeSideHorizontal(gravity, contentWidth, arrowWidth, margin);
+                scratch.placeSideVertical(gravity, arrowGravity, contentHeight, arrowHeight,
+                        contentWidth + arrowWidth, margin);
+                rect.set(scratch.x, scratch.y, scratch.x + contentWidth + arrowWidth,
+                        scratch.y + Math.max(contentHeight, arrowHeight));
+            }
+            candidateRules[i] = rejections[i];
+        }
+
+        chosenRect.set(popupRect);
+        this.requested = indexOf(requested);
+        this.chosen = indexOf(chosen);
+        invalidate();
+    }
+
+    /**
+     * Returns the rule that rejected a gravity, {@link #RULE_NONE} if it was not rejected.
+     */
+    int getRejection(int gravity) {
+        int index = indexOf(gravity);
+        return index < 0 ? RULE_NONE : candidateRules[index];
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        getLocationOnScreen(location);
+        int saveCount = canvas.save();
+        canvas.translate(-location[0], -location[1]);
+
+        strokePaint.setColor(COLOR_CANDIDATE);
+        textPaint.setColor(COLOR_CANDIDATE);
+        for (int i = 0; i < CANDIDATES.length; i++) {
+            Rect rect = candidateRects[i];
+            canvas.drawRect(rect, strokePaint);
+            float x = rect.left + strokePaint.getStrokeWidth();
+            float y = rect.bottom - textPaint.descent();
+            canvas.drawText(CANDIDATE_NAMES[i], x, y, textPaint);
+            x += textPaint.measureText(CANDIDATE_NAMES[i]);
+            canvas.drawText(i == chosen ? CHOSEN : RULE_LABELS[candidateRules[i]], x, y, textPaint);
+        }
+
+        strokePaint.setColor(COLOR_ANCHOR);
+        canvas.drawRect(anchorRect, strokePaint);
+
+        strokePaint.setColor(COLOR_CHOSEN);
+        textPaint.setColor(COLOR_CHOSEN);
+        canvas.drawRect(chosenRect, strokePaint);
+        if (requested >= 0 && chosen >= 0) {
+            float x = chosenRect.left;
+            float y = chosenRect.top - textPaint.descent();
+            canvas.drawText(CANDIDATE_NAMES[requested], x, y, textPaint);
+            x += textPaint.measureText(CANDIDATE_NAMES[requested]);
+            canvas.drawText(ARROW, x, y, textPaint);
+            x += textPaint.measureText(ARROW);
+            canvas.drawText(CANDIDATE_NAMES[chosen], x, y, textPaint);
+        }
+
+        canvas.restoreToCount(saveCount);
+    }
+}
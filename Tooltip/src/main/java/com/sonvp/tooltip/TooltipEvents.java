@@ -0,0 +1,338 @@
+/*
+ * Copyright (C) 2017 sonvp
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sonvp.tooltip;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+
+/**
+ * Stream of tool tip events for analytics: shown, clicked, and dismissed with its reason and the
+ * time the tool tip stayed on screen.
+ * <p/>
+ * Recording an event on the UI thread only copies a few fields into a ring buffer allocated up
+ * front. A background thread drains the buffer in batches, when a batch is full or a flush interval
+ * after the first event of the batch, and hands them to the {@link Consumer}. It sleeps while the
+ * buffer is empty. If the consumer falls behind and the buffer
+ * fills up, the oldest events are dropped and counted.
+ * <p/>
+ * Installed with {@link Tooltip#setEvents(TooltipEvents)}.
+ */
+public final class TooltipEvents {
+
+    public static final int TYPE_SHOWN = 1;
+    public static final int TYPE_CLICKED = 2;
+    public static final int TYPE_DISMISSED = 3;
+
+    /**
+     * Dismissed by the system, e.g. when the window of the tool tip goes away.
+     */
+    public static final int REASON_OTHER = 0;
+    /**
+     * Dismissed by {@link Tooltip#remove()}.
+     */
+    public static final int REASON_REMOVED = 1;
+    /**
+     * Dismissed by a touch outside of the tool tip.
+     */
+    public static final int REASON_OUTSIDE_TOUCH = 2;
+    /**
+     * Dismissed at the end of its {@link Tooltip.Builder#withDuration(long) duration}.
+     */
+    public static final int REASON_TIMEOUT = 3;
+
+    private static final int DEFAULT_CAPACITY = 256;
+    private static final int DEFAULT_BATCH_SIZE = 32;
+    private static final long DEFAULT_FLUSH_INTERVAL = 1000L;
+
+    /**
+     * Receives the events, on the background thread of the stream.
+     */
+    public interface Consumer {
+        /**
+         * The batch is reused for the next call and must not be kept.
+         */
+        @WorkerThread
+        void onEvents(@NonNull Batch batch);
+    }
+
+    /**
+     * Events drained together, oldest first.
+     */
+    public static final class Batch {
+
+        private final int[] types;
+        private final String[] ids;
+        private final long[] times;
+        private final int[] reasons;
+        private final long[] dwells;
+        private int size;
+        private int dropped;
+
+        Batch(int capacity) {
+            types = new int[capacity];
+            ids = new String[capacity];
+            times = new long[capacity];
+            reasons = new int[capacity];
+            dwells = new long[capacity];
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Returns the number of events dropped since the previous batch.
+         */
+        public int getDroppedCount() {
+            return dropped;
+        }
+
+        /**
+         * Returns one of {@link #TYPE_SHOWN}, {@link #TYPE_CLICKED} or {@link #TYPE_DISMISSED}.
+         */
+        public int getType(int index) {
+            return types[index];
+        }
+
+        /**
+         * Returns the id given by {@link Tooltip.Builder#withId(String)}, or null.
+         */
+        @Nullable
+        public String getId(int index) {
+            return ids[index];
+        }
+
+        /**
+         * Returns the wall clock time of the event, in milliseconds.
+         */
+        public long getTime(int index) {
+            return times[index];
+        }
+
+        /**
+         * Returns the dismiss reason of a {@link #TYPE_DISMISSED} event, {@link #REASON_OTHER}
+         * for other events.
+         */
+        public int getReason(int index) {
+            return reasons[index];
+        }
+
+        /**
+         * Returns how long the tool tip was shown, in milliseconds, for {@link #TYPE_DISMISSED}
+         * events, 0 for other events.
+         */
+        public long getDwellTime(int index) {
+            return dwells[index];
+        }
+    }
+
+    private final Consumer consumer;
+    private final int capacity;
+    private final int batchSize;
+    private final long flushInterval;
+
+    private final Object lock = new Object();
+
+    // ring buffer, guarded by lock
+    private final int[] types;
+    private final String[] ids;
+    private final long[] times;
+    private final int[] reasons;
+    private final long[] dwells;
+    private int head;
+    private int count;
+    private int dropped;
+    private long totalDropped;
+    private boolean running;
+
+    private final Batch batch;
+    @Nullable
+    private Thread thread;
+
+    public TooltipEvents(@NonNull Consumer consumer) {
+        this(consumer, DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE, DEFAULT_FLUSH_INTERVAL);
+    }
+
+    /**
+     * @param capacity      number of events buffered before the oldest are dropped
+     * @param batchSize     maximum number of events handed to the consumer at once
+     * @param flushInterval maximum time in milliseconds an event waits for its batch to fill
+     */
+    public TooltipEvents(@NonNull Consumer consumer, int capacity, int batchSize, long flushInterval) {
+        if (capacity <= 0 || batchSize <= 0 || batchSize > capacity || flushInterval <= 0L) {
+            throw new IllegalArgumentException("Unsupported event buffer - capacity " + capacity
+                    + ", batch size " + batchSize + ", flush interval " + flushInterval);
+        }
+        this.consumer = consumer;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        types = new int[capacity];
+        ids = new String[capacity];
+        times = new long[capacity];
+        reasons = new int[capacity];
+        dwells = new long[capacity];
+        batch = new Batch(batchSize);
+    }
+
+    /**
+     * Starts the background thread. Events recorded before are ignored.
+     */
+    public void start() {
+        synchronized (lock) {
+            if (running) {
+                return;
+            }
+            running = true;
+            if (thread != null) {
+                // stopped but still draining, it goes on
+                return;
+            }
+            thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    drainLoop();
+                }
+            }, "TooltipEvents");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Stops recording. The background thread hands the events still buffered to the consumer,
+     * then ends.
+     */
+    public void stop() {
+        synchronized (lock) {
+            running = false;
+            lock.notify();
+        }
+    }
+
+    /**
+     * Returns the number of events dropped since the stream was created.
+     */
+    public long getDroppedCount() {
+        synchronized (lock) {
+            return totalDropped;
+        }
+    }
+
+    void record(int type, @Nullable String id, int reason, long dwell) {
+        long time = System.currentTimeMillis();
+        synchronized (lock) {
+            if (!running) {
+                return;
+            }
+            if (count == capacity) {
+                // backpressure, drop the oldest
+                ids[head] = null;
+                head = (head + 1) % capacity;
+                count--;
+                dropped++;
+                totalDropped++;
+            }
+            int tail = (head + count) % capacity;
+            types[tail] = type;
+            ids[tail] = id;
+            times[tail] = time;
+            reasons[tail] = reason;
+            dwells[tail] = dwell;
+            count++;
+            if (count == 1 || count == batchSize) {
+                // the first event starts the flush interval, a full batch ends it
+                lock.notify();
+            }
+        }
+    }
+
+    /**
+     * Returns the background thread, null once it has ended.
+     */
+    @Nullable
+    Thread getThread() {
+        synchronized (lock) {
+            return thread;
+        }
+    }
+
+    private void drainLoop() {
+        while (true) {
+            synchronized (lock) {
+                while (running && count == 0) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        stopOnInterrupt();
+                    }
+                }
+                long deadline = System.nanoTime() / 1000000L + flushInterval;
+                while (running && count < batchSize) {
+                    long wait = deadline - System.nanoTime() / 1000000L;
+                    if (wait <= 0L) {
+                        break;
+                    }
+                    try {
+                        lock.wait(wait);
+                    } catch (InterruptedException e) {
+                        stopOnInterrupt();
+                    }
+                }
+                if (!running && count == 0 && dropped == 0) {
+                    thread = null;
+                    return;
+                }
+                fillBatch();
+            }
+            if (batch.size > 0 || batch.dropped > 0) {
+                consumer.onEvents(batch);
+            }
+        }
+    }
+
+    /**
+     * Interrupting the background thread stops the stream: the events still buffered are handed
+     * to the consumer, which sees the interrupt flag, and the thread ends.
+     */
+    private void stopOnInterrupt() {
+        running = false;
+        Thread.currentThread().interrupt();
+    }
+
+    private void fillBatch() {
+        int size = Math.min(count, batchSize);
+        for (int i = 0; i < size; i++) {
+            int slot = (head + i) % capacity;
+            batch.types[i] = types[slot];
+            batch.ids[i] = ids[slot];
+            batch.times[i] = times[slot];
+            batch.reasons[i] = reasons[slot];
+            batch.dwells[i] = dwells[slot];
+            ids[slot] = null;
+        }
+        for (int i = size; i < batch.size; i++) {
+            batch.ids[i] = null;
+        }
+        head = (head + size) % capacity;
+        count -= size;
+        batch.size = size;
+        batch.dropped = dropped;
+        dropped = 0;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2017 sonvp
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sonvp.tooltip;
+
+import android.content.Context;
+import android.graphics.Typeface;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.UiThread;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Loads the fonts of {@link Tooltip.Builder#withFont(String, Tooltip.FontLoader)} on the background
+ * executor and keeps them for the whole process. Tool tips asking for a font being loaded wait
+ * for the same load.
+ */
+final class TooltipFonts {
+
+    interface Callback {
+        /**
+         * @param typeface the font, or null if it could not be loaded
+         */
+        @UiThread
+        void onFontLoaded(@Nullable Typeface typeface);
+    }
+
+    // guarded by itself
+    private static final HashMap<String, Typeface> fonts = new HashMap<String, Typeface>();
+    // UI thread only
+    private static final HashMap<String, ArrayList<Callback>> pending = new HashMap<String, ArrayList<Callback>>();
+
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private TooltipFonts() {
+    }
+
+    @Nullable
+    static Typeface getCached(String key) {
+        synchronized (fonts) {
+            return fonts.get(key);
+        }
+    }
+
+    /**
+     * Loads a font on a background thread, unless it is already cached.
+     */
+    @UiThread
+    static void load(@NonNull Context context, @NonNull final String key, @NonNull final Tooltip.FontLoader loader,
+                     @NonNull Callback callback) {
+        Typeface cached = getCached(key);
+        if (cached != null) {
+            callback.onFontLoaded(cached);
+            return;
+        }
+        ArrayList<Callback> callbacks = pending.get(key);
+        if (callbacks != null) {
+            callbacks.add(callback);
+            return;
+        }
+        callbacks = new ArrayList<Callback>();
+        callbacks.add(callback);
+        pending.put(key, callbacks);
+
+        final Context appContext = context.getApplicationContext();
+        TooltipImageLoader.getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                Typeface loaded;
+                try {
+                    loaded = loader.load(appContext);
+                } catch (RuntimeException e) {
+                    // e.g. a missing asset
+                    loaded = null;
+                }
+                final Typeface typeface = loaded;
+                if (typeface != null) {
+                    synchronized (fonts) {
+                        fonts.put(key, typeface);
+                    }
+                }
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        ArrayList<Callback> callbacks = pending.remove(key);
+                        if (callbacks != null) {
+                            for (int i = 0; i < callbacks.size(); i++) {
+                                callbacks.get(i).onFontLoaded(typeface);
+                            }
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    static void clearCache() {
+        synchronized (fonts) {
+            fonts.clear();
+        }
+    }
+}
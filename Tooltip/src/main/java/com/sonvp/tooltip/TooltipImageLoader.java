@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2017 sonvp
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sonvp.tooltip;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.support.annotation.Nullable;
+import android.support.annotation.UiThread;
+import android.support.annotation.WorkerThread;
+import android.support.v4.util.LruCache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodes the icons and images of tool tips on background threads, downsampled to the size they
+ * are drawn at, and keeps them in a process-wide LRU cache bounded in bytes.
+ */
+final class TooltipImageLoader {
+
+    interface Callback {
+        /**
+         * Called on the UI thread.
+         *
+         * @param bitmap the decoded image, or null if it could not be decoded
+         */
+        @UiThread
+        void onImageLoaded(@Nullable Bitmap bitmap);
+    }
+
+    private static final int MIN_CACHE_SIZE = 1024 * 1024;
+    private static final int MAX_CACHE_SIZE = 8 * 1024 * 1024;
+
+    private static final LruCache<String, Bitmap> cache = new LruCache<String, Bitmap>(
+            (int) Math.max(MIN_CACHE_SIZE, Math.min(MAX_CACHE_SIZE, Runtime.getRuntime().maxMemory() / 32))) {
+        @Override
+        protected int sizeOf(String key, Bitmap bitmap) {
+            return bitmap.getRowBytes() * bitmap.getHeight();
+        }
+    };
+
+    private static final Executor executor;
+
+    static {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(2, 2, 5L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }
+                }, "TooltipImageLoader");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        pool.allowCoreThreadTimeOut(true);
+        executor = pool;
+    }
+
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private TooltipImageLoader() {
+    }
+
+    /**
+     * Returns the cached image for the given source and size, or null.
+     */
+    @Nullable
+    static Bitmap getCached(Object source, int width, int height) {
+        return cache.get(key(source, width, height));
+    }
+
+    /**
+     * Decodes an image on a background thread so that it fits in width x height, unless it is
+     * already cached.
+     *
+     * @param source a drawable resource id or a {@link Uri}
+     */
+    @UiThread
+    static void load(Context context, final Object source, final int width, final int height,
+                     final Callback callback) {
+        final String key = key(source, width, height);
+        Bitmap cached = cache.get(key);
+        if (cached != null) {
+            callback.onImageLoaded(cached);
+            return;
+        }
+        final Context appContext = context.getApplicationContext();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Bitmap bitmap = decode(appContext, source, width, height);
+                if (bitmap != null) {
+                    cache.put(key, bitmap);
+                }
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onImageLoaded(bitmap);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * The background executor, shared with the parsing of {@link TooltipRichText}.
+     */
+    static Executor getExecutor() {
+        return executor;
+    }
+
+    static void clearCache() {
+        cache.evictAll();
+    }
+
+    static int getCacheSize() {
+        return cache.size();
+    }
+
+    static int getCacheMaxSize() {
+        return cache.maxSize();
+    }
+
+    @WorkerThread
+    @Nullable
+    static Bitmap decode(Context context, Object source, int width, int height) {
+        try {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            decodeStream(context, source, options);
+            if (options.outWidth <= 0 || options.outHeight <= 0) {
+                return null;
+            }
+
+            options.inJustDecodeBounds = false;
+            options.inSampleSize = sampleSize(options.outWidth, options.outHeight, width, height);
+            Bitmap bitmap = decodeStream(context, source, options);
+            if (bitmap == null) {
+                return null;
+            }
+
+            // inSampleSize only divides by powers of two, finish the job
+            float scale = Math.min(1.0F, Math.min((float) width / bitmap.getWidth(), (float) height / bitmap.getHeight()));
+            if (scale < 1.0F) {
+                Bitmap scaled = Bitmap.createScaledBitmap(bitmap,
+                        Math.max(1, Math.round(bitmap.getWidth() * scale)),
+                        Math.max(1, Math.round(bitmap.getHeight() * scale)), true);
+                if (scaled != bitmap) {
+                    bitmap.recycle();
+                }
+                bitmap = scaled;
+            }
+            return bitmap;
+        } catch (IOException e) {
+            return null;
+        } catch (OutOfMemoryError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Largest power of two keeping the decoded image at least as large as the target.
+     */
+    static int sampleSize(int imageWidth, int imageHeight, int width, int height) {
+        int sampleSize = 1;
+        while (imageWidth / (sampleSize * 2) >= width && imageHeight / (sampleSize * 2) >= height) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private static Bitmap decodeStream(Context context, Object source, BitmapFactory.Options options)
+            throws IOException {
+        if (source instanceof Integer) {
+            return BitmapFactory.decodeResource(context.getResources(), (Integer) source, options);
+        }
+        InputStream input = context.getContentResolver().openInputStream((Uri) source);
+        if (input == null) {
+            return null;
+        }
+        try {
+            return BitmapFactory.decodeStream(input, null, options);
+        } finally {
+            input.close();
+        }
+    }
+
+    private static String key(Object source, int width, int height) {
+        return source + "@" + width + "x" + height;
+    }
+}
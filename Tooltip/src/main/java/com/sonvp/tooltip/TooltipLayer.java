@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2017 sonvp
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sonvp.tooltip;
+
+import android.content.Context;
+import android.view.MotionEvent;
+import android.view.View;
+import android.widget.FrameLayout;
+
+/**
+ * Holds a tool tip drawn in the window of its anchor, for {@link TooltipProfile#isInWindow()}.
+ * Covers the root view to place the bubble anywhere, but only takes the touches that land on the
+ * bubble: others go on to the views below, after telling the tool tip about them.
+ */
+final class TooltipLayer extends FrameLayout {
+
+    private final Tooltip tooltip;
+    private final int[] location = new int[2];
+
+    TooltipLayer(Context context, Tooltip tooltip) {
+        super(context);
+        this.tooltip = tooltip;
+    }
+
+    /**
+     * Moves a child to the given screen position.
+     */
+    void place(View child, int x, int y) {
+        getLocationOnScreen(location);
+        child.setTranslationX(x - location[0]);
+        child.setTranslationY(y - location[1]);
+    }
+
+    @Override
+    public boolean dispatchTouchEvent(MotionEvent event) {
+        if (event.getActionMasked() == MotionEvent.ACTION_DOWN && !isOnChild(event.getX(), event.getY())) {
+            tooltip.onOutsideTouch((int) event.getRawX(), (int) event.getRawY());
+            return false;
+        }
+        return super.dispatchTouchEvent(event);
+    }
+
+    private boolean isOnChild(float x, float y) {
+        for (int i = 0; i < getChildCount(); i++) {
+            View child = getChildAt(i);
+            if (child.getVisibility() != VISIBLE) {
+                continue;
+            }
+            float left = child.getLeft() + child.getTranslationX();
+            float top = child.getTop() + child.getTranslationY();
+            if (x >= left && x < left + child.getWidth() && y >= top && y < top + child.getHeight()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
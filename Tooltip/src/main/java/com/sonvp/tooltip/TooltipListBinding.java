@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2017 sonvp
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sonvp.tooltip;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.UiThread;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+
+/**
+ * Keeps a tool tip on an item of a {@link RecyclerView}, identified by its stable id rather than
+ * by the view showing it.
+ * <p/>
+ * When the item is bound to another view, the tool tip moves to that view. When the item moves,
+ * e.g. after {@link RecyclerView.Adapter#notifyItemMoved(int, int)}, the tool tip follows it once
+ * the list is laid out. When the item scrolls out of the list, the tool tip hides; it shows again
+ * when the item comes back. The tool tip is never rebuilt. Item views do not get the tool tip as
+ * tag, as they are recycled.
+ * <p/>
+ * The binding ends by itself when the tool tip is dismissed, and removes its listeners.
+ */
+public final class TooltipListBinding {
+
+    private final Tooltip tooltip;
+    private final RecyclerView list;
+    private final RecyclerView.Adapter adapter;
+    private final long itemId;
+
+    private boolean bound = true;
+    private boolean syncPosted = false;
+    private boolean shown = false;
+    private boolean animationsPending = false;
+
+    private final Runnable sync = new Runnable() {
+        @Override
+        public void run() {
+            syncPosted = false;
+            sync();
+        }
+    };
+
+    private final RecyclerView.OnScrollListener scrollListener = new RecyclerView.OnScrollListener() {
+        @Override
+        public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+            sync();
+        }
+    };
+
+    private final RecyclerView.OnChildAttachStateChangeListener childListener =
+            new RecyclerView.OnChildAttachStateChangeListener() {
+                @Override
+                public void onChildViewAttachedToWindow(View view) {
+                    postSync();
+                }
+
+                @Override
+                public void onChildViewDetachedFromWindow(View view) {
+                    postSync();
+                }
+            };
+
+    // the list lays its children out again after moves, changes and rebinds in place
+    private final View.OnLayoutChangeListener layoutListener = new View.OnLayoutChangeListener() {
+        @Override
+        public void onLayoutChange(View v, int left, int top, int right, int bottom,
+                                   int oldLeft, int oldTop, int oldRight, int oldBottom) {
+            sync();
+        }
+    };
+
+    // changes the list lays out without moving or attaching children, e.g. a rebind in place
+    private final RecyclerView.AdapterDataObserver dataObserver = new RecyclerView.AdapterDataObserver() {
+        @Override
+        public void onChanged() {
+            postSync();
+        }
+
+        @Override
+        public void onItemRangeChanged(int positionStart, int itemCount) {
+            postSync();
+        }
+
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount) {
+            postSync();
+        }
+
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount) {
+            postSync();
+        }
+
+        @Override
+        public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+            postSync();
+        }
+    };
+
+    // moves and changes are animated after the layout, from where the item was
+    private final RecyclerView.ItemAnimator.ItemAnimatorFinishedListener animationsFinished =
+            new RecyclerView.ItemAnimator.ItemAnimatorFinishedListener() {
+                @Override
+                public void onAnimationsFinished() {
+                    animationsPending = false;
+                    sync();
+                }
+            };
+
+    private TooltipListBinding(Tooltip tooltip, RecyclerView list, RecyclerView.Adapter adapter, long itemId) {
+        this.tooltip = tooltip;
+        this.list = list;
+        this.adapter = adapter;
+        this.itemId = itemId;
+    }
+
+    /**
+     * Binds a showing tool tip to the item with the given stable id, ending the previous binding
+     * of the tool tip, if any.
+     *
+     * @throws IllegalStateException if the adapter of the list has no stable ids
+     */
+    @UiThread
+    @NonNull
+    public static TooltipListBinding bind(@NonNull Tooltip tooltip, @NonNull RecyclerView list, long itemId) {
+        RecyclerView.Adapter adapter = list.getAdapter();
+        if (adapter == null || !adapter.hasStableIds()) {
+            throw new IllegalStateException("TooltipListBinding requires an adapter with stable ids");
+        }
+        TooltipListBinding binding = new TooltipListBinding(tooltip, list, adapter, itemId);
+        tooltip.setListBinding(binding);
+        tooltip.setTagsAnchor(false);
+        list.addOnScrollListener(binding.scrollListener);
+        list.addOnChildAttachStateChangeListener(binding.childListener);
+        list.addOnLayoutChangeListener(binding.layoutListener);
+        adapter.registerAdapterDataObserver(binding.dataObserver);
+        binding.sync();
+        return binding;
+    }
+
+    /**
+     * Stops following the item. The tool tip stays where it is, visible.
+     */
+    @UiThread
+    public void unbind() {
+        if (!bound) {
+            return;
+        }
+        bound = false;
+        list.removeOnScrollListener(scrollListener);
+        list.removeOnChildAttachStateChangeListener(childListener);
+        list.removeOnLayoutChangeListener(layoutListener);
+        adapter.unregisterAdapterDataObserver(dataObserver);
+        list.removeCallbacks(sync);
+        tooltip.clearListBinding(this);
+        tooltip.setHidden(false);
+    }
+
+    boolean isBound() {
+        return bound;
+    }
+
+    /**
+     * Whether the item is on screen, and the tool tip with it.
+     */
+    public boolean isItemVisible() {
+        return !tooltip.isHidden();
+    }
+
+    private void postSync() {
+        // children attach and detach in bulk during layout, look once it is over
+        if (!syncPosted) {
+            syncPosted = true;
+            list.post(sync);
+        }
+    }
+
+    private void sync() {
+        if (!bound) {
+            return;
+        }
+        if (tooltip.isShowing()) {
+            shown = true;
+        } else {
+            if (shown) {
+                unbind();
+            }
+            return;
+        }
+
+        RecyclerView.ViewHolder holder = list.findViewHolderForItemId(itemId);
+        View itemView = holder != null ? holder.itemView : null;
+        if (itemView == null || !isOnScreen(itemView)) {
+            tooltip.setHidden(true);
+            return;
+        }
+        if (itemView != tooltip.getAnchorView()) {
+            tooltip.setAnchor(itemView);
+        }
+        tooltip.setHidden(false);
+        tooltip.updateAnchor();
+
+        RecyclerView.ItemAnimator animator = list.getItemAnimator();
+        if (!animationsPending && animator != null && animator.isRunning()) {
+            animationsPending = animator.isRunning(animationsFinished);
+        }
+    }
+
+    private boolean isOnScreen(View itemView) {
+        return itemView.getParent() == list
+                && itemView.getBottom() > list.getPaddingTop()
+                && itemView.getTop() < list.getHeight() - list.getPaddingBottom()
+                && itemView.getRight() > list.getPaddingLeft()
+                && itemView.getLeft() < list.getWidth() - list.getPaddingRight();
+    }
+}
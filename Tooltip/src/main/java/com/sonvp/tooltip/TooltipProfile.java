@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2017 sonvp
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sonvp.tooltip;
+
+import android.app.ActivityManager;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.provider.Settings;
+import android.support.annotation.NonNull;
+import android.support.annotation.UiThread;
+
+/**
+ * How tool tips are rendered: with or without show and dismiss transitions, elevation shadows,
+ * a popup window of their own and a full-screen view catching outside touches.
+ * <p/>
+ * Unless one is set with {@link Tooltip#setProfile(TooltipProfile)} or
+ * {@link Tooltip.Builder#withProfile(TooltipProfile)}, the profile is picked when a tool tip is
+ * built: {@link #LOW_END} on low-RAM devices and in battery saver mode, {@link #REDUCED_MOTION}
+ * when animations are turned off, {@link #DEFAULT} otherwise. The picked profile is kept for the
+ * process, and picked again when battery saver is switched or the animator duration scale changes.
+ */
+public final class TooltipProfile {
+
+    /**
+     * Transitions, shadows, a popup window and an outside touch view.
+     */
+    public static final TooltipProfile DEFAULT = new TooltipProfile("default", true, true, false, true);
+
+    /**
+     * {@link #DEFAULT} without transitions.
+     */
+    public static final TooltipProfile REDUCED_MOTION = new TooltipProfile("reduced-motion", false, true, false, true);
+
+    /**
+     * The cheapest path: no transition, no shadow, drawn in the window of the anchor, in a layer
+     * that also catches outside touches.
+     */
+    public static final TooltipProfile LOW_END = new TooltipProfile("low-end", false, false, true, false);
+
+    // profile picked by detect(), null until first needed or after the device state changed
+    private static volatile TooltipProfile detected;
+    private static boolean watching = false;
+
+    private final String name;
+    private final boolean transitions;
+    private final boolean shadows;
+    private final boolean inWindow;
+    private final boolean overlay;
+
+    /**
+     * @param transitions whether tool tips scale and fade in and out
+     * @param shadows     whether tool tips cast their {@link Tooltip.Builder#withElevation(float)
+     *                    elevation} shadow
+     * @param inWindow    whether tool tips are drawn in the window of their anchor rather than in
+     *                    a popup window
+     * @param overlay     whether outside touches of popup tool tips are caught by a full-screen
+     *                    view rather than by the popup window
+     */
+    public TooltipProfile(@NonNull String name, boolean transitions, boolean shadows, boolean inWindow,
+                          boolean overlay) {
+        this.name = name;
+        this.transitions = transitions;
+        this.shadows = shadows;
+        this.inWindow = inWindow;
+        this.overlay = overlay;
+    }
+
+    /**
+     * Picks the profile from the device state: low RAM, battery saver and the animator duration
+     * scale.
+     */
+    @NonNull
+    public static TooltipProfile detect(@NonNull Context context) {
+        if (isLowRamDevice(context) || isPowerSaveMode(context)) {
+            return LOW_END;
+        }
+        if (areAnimationsDisabled(context)) {
+            return REDUCED_MOTION;
+        }
+        return DEFAULT;
+    }
+
+    /**
+     * Returns the profile {@link #detect(Context) detected} from the device state, detecting it
+     * only the first time and after the device state changed.
+     */
+    @UiThread
+    @NonNull
+    static TooltipProfile getDetected(@NonNull Context context) {
+        TooltipProfile profile = detected;
+        if (profile == null) {
+            watch(context.getApplicationContext());
+            profile = detect(context);
+            detected = profile;
+        }
+        return profile;
+    }
+
+    /**
+     * Forgets the detected profile, and the device state watchers, which stay registered.
+     */
+    static void clearDetected() {
+        detected = null;
+        watching = false;
+    }
+
+    /**
+     * Clears the detected profile when battery saver is switched or the animator duration scale
+     * changes. Low RAM does not change.
+     */
+    private static void watch(Context appContext) {
+        if (watching) {
+            return;
+        }
+        watching = true;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            appContext.registerReceiver(new BroadcastReceiver() {
+                @Override
+                public void onReceive(Context context, Intent intent) {
+                    detected = null;
+                }
+            }, new IntentFilter(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED));
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            Uri scale = Settings.Global.getUriFor(Settings.Global.ANIMATOR_DURATION_SCALE);
+            appContext.getContentResolver().registerContentObserver(scale, false,
+                    new ContentObserver(new Handler(Looper.getMainLooper())) {
+                        @Override
+                        public void onChange(boolean selfChange) {
+                            detected = null;
+                        }
+                    });
+        }
+    }
+
+    @NonNull
+    public String getName() {
+        return name;
+    }
+
+    public boolean hasTransitions() {
+        return transitions;
+    }
+
+    public boolean hasShadows() {
+        return shadows;
+    }
+
+    public boolean isInWindow() {
+        return inWindow;
+    }
+
+    public boolean hasOverlay() {
+        return overlay;
+    }
+
+    @Override
+    public String toString() {
+        return "TooltipProfile{" + name + '}';
+    }
+
+    private static boolean isLowRamDevice(Context context) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT) {
+            return false;
+        }
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        return activityManager != null && activityManager.isLowRamDevice();
+    }
+
+    private static boolean isPowerSaveMode(Context context) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return false;
+        }
+        PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        return powerManager != null && powerManager.isPowerSaveMode();
+    }
+
+    private static boolean areAnimationsDisabled(Context context) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            return false;
+        }
+        return Settings.Global.getFloat(context.getContentResolver(),
+                Settings.Global.ANIMATOR_DURATION_SCALE, 1.0F) == 0.0F;
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright (C) 2017 sonvp
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sonvp.tooltip;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Typeface;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.ColorInt;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.UiThread;
+import android.support.annotation.WorkerThread;
+import android.support.v4.util.LruCache;
+import android.text.Html;
+import android.text.Spannable;
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
+import android.text.SpannedString;
+import android.text.TextUtils;
+import android.text.style.BackgroundColorSpan;
+import android.text.style.ForegroundColorSpan;
+import android.text.style.StyleSpan;
+import android.text.style.TypefaceSpan;
+import android.text.style.URLSpan;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Parses the markup of {@link Tooltip.Builder#withRichText(String) rich text} into spans, off the
+ * UI thread, and keeps the immutable results in a process-wide cache keyed by source and theme.
+ * <p/>
+ * HTML is parsed by {@link Html}, with {@code <code>} read as {@code <tt>}. On top of it, a few
+ * markdown-like marks are understood: {@code **bold**}, {@code `code`} and {@code [text](url)},
+ * where the text of a link has no {@code ]}.
+ * <p/>
+ * A source is parsed once even when it is loaded again while being parsed: later callbacks wait
+ * for the parse in flight.
+ */
+final class TooltipRichText {
+
+    interface Callback {
+        @UiThread
+        void onParsed(@NonNull CharSequence text);
+    }
+
+    private static final int CACHE_SIZE = 64;
+    private static final int DEFAULT_LINK_COLOR = 0xFF80CBC4;
+    private static final int CODE_BACKGROUND = 0x33808080;
+
+    private static final LruCache<String, CharSequence> cache = new LruCache<String, CharSequence>(CACHE_SIZE);
+    // UI thread only
+    private static final HashMap<String, ArrayList<Callback>> pending = new HashMap<String, ArrayList<Callback>>();
+
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private TooltipRichText() {
+    }
+
+    /**
+     * Returns the parsed text if it is cached, or null.
+     */
+    @Nullable
+    static CharSequence getCached(Context context, String source) {
+        return cache.get(key(source, getLinkColor(context)));
+    }
+
+    /**
+     * Parses on a background thread, unless the text is already cached.
+     */
+    @UiThread
+    static void load(Context context, final String source, final Callback callback) {
+        final int linkColor = getLinkColor(context);
+        final String key = key(source, linkColor);
+        CharSequence cached = cache.get(key);
+        if (cached != null) {
+            callback.onParsed(cached);
+            return;
+        }
+        ArrayList<Callback> callbacks = pending.get(key);
+        if (callbacks != null) {
+            callbacks.add(callback);
+            return;
+        }
+        callbacks = new ArrayList<Callback>();
+        callbacks.add(callback);
+        pending.put(key, callbacks);
+
+        TooltipImageLoader.getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                final CharSequence text = parse(source, linkColor);
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        ArrayList<Callback> callbacks = pending.remove(key);
+                        if (callbacks != null) {
+                            for (int i = 0; i < callbacks.size(); i++) {
+                                callbacks.get(i).onParsed(text);
+                            }
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    @WorkerThread
+    @NonNull
+    static CharSequence parse(Context context, String source) {
+        return parse(source, getLinkColor(context));
+    }
+
+    @NonNull
+    private static CharSequence parse(String source, @ColorInt int linkColor) {
+        String key = key(source, linkColor);
+        CharSequence text = cache.get(key);
+        if (text == null) {
+            text = parseUncached(source, linkColor);
+            cache.put(key, text);
+        }
+        return text;
+    }
+
+    static int getCacheSize() {
+        return cache.size();
+    }
+
+    /**
+     * Returns the number of sources being parsed by {@link #load(Context, String, Callback)}.
+     */
+    static int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Whether the parsed text has links.
+     */
+    static boolean hasLinks(CharSequence text) {
+        return text instanceof Spanned
+                && ((Spanned) text).nextSpanTransition(0, text.length(), URLSpan.class) < text.length();
+    }
+
+    /**
+     * Empties the cache and forgets the parses in flight, whose callbacks are then not called.
+     */
+    @UiThread
+    static void clearCache() {
+        cache.evictAll();
+        pending.clear();
+    }
+
+    /**
+     * The source without its markup, shown until it is parsed.
+     */
+    @NonNull
+    static String stripMarkup(String source) {
+        return source.replaceAll("<[^>]*>", "")
+                .replaceAll("\\[([^\\]]*)\\]\\([^)]*\\)", "$1")
+                .replace("**", "")
+                .replace("`", "");
+    }
+
+    @NonNull
+    static CharSequence parseUncached(String source, @ColorInt int linkColor) {
+        CharSequence html = source;
+        if (source.indexOf('<') >= 0) {
+            //noinspection deprecation
+            html = Html.fromHtml(source.replace("<code>", "<tt>").replace("</code>", "</tt>"));
+        }
+        SpannableStringBuilder text = new SpannableStringBuilder(html);
+        parseMarks(text);
+
+        for (TypefaceSpan span : text.getSpans(0, text.length(), TypefaceSpan.class)) {
+            if ("monospace".equals(span.getFamily())) {
+                text.setSpan(new BackgroundColorSpan(CODE_BACKGROUND), text.getSpanStart(span),
+                        text.getSpanEnd(span), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+            }
+        }
+        for (URLSpan span : text.getSpans(0, text.length(), URLSpan.class)) {
+            text.setSpan(new ForegroundColorSpan(linkColor), text.getSpanStart(span),
+                    text.getSpanEnd(span), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+        }
+        return new SpannedString(text);
+    }
+
+    private static void parseMarks(SpannableStringBuilder text) {
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (c == '`') {
+                int end = TextUtils.indexOf(text, '`', i + 1);
+                if (end > i + 1) {
+                    text.delete(end, end + 1);
+                    text.delete(i, i + 1);
+                    text.setSpan(new TypefaceSpan("monospace"), i, end - 1, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+                    // no marks inside code
+                    i = end - 1;
+                    continue;
+                }
+            } else if (c == '*' && i + 1 < text.length() && text.charAt(i + 1) == '*') {
+                int end = TextUtils.indexOf(text, "**", i + 2);
+                if (end > i + 2) {
+                    text.delete(end, end + 2);
+                    text.delete(i, i + 2);
+                    text.setSpan(new StyleSpan(Typeface.BOLD), i, end - 2, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+                    continue;
+                }
+            } else if (c == '[') {
+                // the link text ends at the first ']', which must be followed by the url
+                int middle = TextUtils.indexOf(text, ']', i + 1);
+                int end = middle > i && middle + 1 < text.length() && text.charAt(middle + 1) == '('
+                        ? TextUtils.indexOf(text, ')', middle + 2) : -1;
+                if (end > middle + 2) {
+                    String url = text.subSequence(middle + 2, end).toString();
+                    text.delete(middle, end + 1);
+                    text.delete(i, i + 1);
+                    text.setSpan(new URLSpan(url), i, middle - 1, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+                    continue;
+                }
+            }
+            i++;
+        }
+    }
+
+    @ColorInt
+    private static int getLinkColor(Context context) {
+        TypedArray a = context.obtainStyledAttributes(new int[]{android.R.attr.textColorLink});
+        try {
+            return a.getColor(0, DEFAULT_LINK_COLOR);
+        } finally {
+            a.recycle();
+        }
+    }
+
+    private static String key(String source, @ColorInt int linkColor) {
+        return Integer.toHexString(linkColor) + ':' + source;
+    }
+}
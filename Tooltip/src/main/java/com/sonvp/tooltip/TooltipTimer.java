@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2017 sonvp
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sonvp.tooltip;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
+import android.os.SystemClock;
+import android.view.View;
+
+/**
+ * Timeouts of the timed tool tips of one window, kept in a hashed timer wheel.
+ * <p/>
+ * Scheduling, cancelling, pausing and resuming an entry take constant time, whatever the number
+ * of timed tool tips. The wheel keeps a single Handler message, for the first tick that has
+ * entries. Deadlines are rounded up to the next tick.
+ */
+final class TooltipTimer implements Handler.Callback {
+
+    static final long TICK_MS = 32L;
+    private static final int SLOTS = 64;
+    private static final int MASK = SLOTS - 1;
+
+    private static final int MSG_TICK = 1;
+
+    /**
+     * A timeout, owned by its tool tip and reused across shows.
+     */
+    static final class Entry {
+
+        private final Runnable onExpired;
+
+        private TooltipTimer timer;
+        private Entry previous;
+        private Entry next;
+        private long deadlineTick;
+        private long remaining = -1L;
+
+        Entry(Runnable onExpired) {
+            this.onExpired = onExpired;
+        }
+
+        boolean isScheduled() {
+            return timer != null;
+        }
+
+        boolean isPaused() {
+            return remaining >= 0L;
+        }
+    }
+
+    private final Handler handler = new Handler(Looper.getMainLooper(), this);
+    private final Entry[] slots = new Entry[SLOTS];
+    private int size;
+
+    // first tick not processed yet
+    private long cursorTick = now() / TICK_MS;
+    // tick of the pending message, or -1
+    private long scheduledTick = -1L;
+
+    /**
+     * Returns the timer of the window of the given view, created on first use.
+     */
+    static TooltipTimer forWindow(View view) {
+        View rootView = view.getRootView();
+        TooltipTimer timer = (TooltipTimer) rootView.getTag(R.id.tooltip_timer);
+        if (timer == null) {
+            timer = new TooltipTimer();
+            rootView.setTag(R.id.tooltip_timer, timer);
+        }
+        return timer;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Schedules an entry to expire after the given delay, replacing its previous deadline.
+     */
+    void schedule(Entry entry, long delay) {
+        cancel(entry);
+        long tick = (now() + Math.max(0L, delay) + TICK_MS - 1) / TICK_MS;
+        entry.deadlineTick = Math.max(tick, cursorTick);
+        link(entry);
+        if (scheduledTick < 0L || entry.deadlineTick < scheduledTick) {
+            post(entry.deadlineTick);
+        }
+    }
+
+    /**
+     * Removes an entry, paused or not. Does nothing if it is not scheduled.
+     */
+    void cancel(Entry entry) {
+        entry.remaining = -1L;
+        if (entry.timer == this) {
+            unlink(entry);
+        } else if (entry.timer != null) {
+            entry.timer.cancel(entry);
+        }
+        // the pending message may now be for an empty slot, which only costs a spurious tick
+        if (size == 0) {
+            handler.removeMessages(MSG_TICK);
+            scheduledTick = -1L;
+        }
+    }
+
+    /**
+     * Stops the countdown of an entry, keeping the time left.
+     */
+    void pause(Entry entry) {
+        if (entry.timer != this || entry.isPaused()) {
+            return;
+        }
+        long remaining = Math.max(0L, entry.deadlineTick * TICK_MS - now());
+        cancel(entry);
+        entry.remaining = remaining;
+    }
+
+    /**
+     * Resumes the countdown of a paused entry with the time left, but at least minDelay.
+     */
+    void resume(Entry entry, long minDelay) {
+        if (!entry.isPaused()) {
+            return;
+        }
+        schedule(entry, Math.max(entry.remaining, minDelay));
+    }
+
+    /**
+     * Pushes back the deadline of an entry so that at least the given delay is left.
+     */
+    void extend(Entry entry, long delay) {
+        if (entry.isPaused()) {
+            entry.remaining = Math.max(entry.remaining, delay);
+        } else if (entry.timer == this && entry.deadlineTick * TICK_MS < now() + delay) {
+            schedule(entry, delay);
+        }
+    }
+
+    @Override
+    public boolean handleMessage(Message msg) {
+        if (msg.what != MSG_TICK) {
+            return false;
+        }
+        scheduledTick = -1L;
+        long nowTick = now() / TICK_MS;
+
+        // advanced first, so that entries scheduled by expiring ones land after this tick
+        long fromTick = cursorTick;
+        cursorTick = nowTick + 1;
+
+        // a full turn visits every slot, going further would only revisit them
+        long lastTick = Math.min(nowTick, fromTick + MASK);
+        for (long tick = fromTick; tick <= lastTick; tick++) {
+            expireSlot((int) (tick & MASK), nowTick);
+        }
+
+        postFirstNonEmptySlot();
+        return true;
+    }
+
+    private void expireSlot(int slot, long nowTick) {
+        Entry entry = slots[slot];
+        while (entry != null) {
+            if (entry.deadlineTick <= nowTick) {
+                unlink(entry);
+                entry.onExpired.run();
+                // the callback may have cancelled other entries of the slot
+                entry = slots[slot];
+            } else {
+                entry = entry.next;
+            }
+        }
+    }
+
+    private void postFirstNonEmptySlot() {
+        if (size == 0) {
+            return;
+        }
+        for (int i = 0; i < SLOTS; i++) {
+            long tick = cursorTick + i;
+            if (slots[(int) (tick & MASK)] != null) {
+                // the slot may only hold entries of a later turn, they are checked when reached
+                post(tick);
+                return;
+            }
+        }
+    }
+
+    private void post(long tick) {
+        handler.removeMessages(MSG_TICK);
+        scheduledTick = tick;
+        handler.sendEmptyMessageAtTime(MSG_TICK, tick * TICK_MS);
+    }
+
+    private void link(Entry entry) {
+        int slot = (int) (entry.deadlineTick & MASK);
+        Entry head = slots[slot];
+        entry.previous = null;
+        entry.next = head;
+        if (head != null) {
+            head.previous = entry;
+        }
+        slots[slot] = entry;
+        entry.timer = this;
+        size++;
+    }
+
+    private void unlink(Entry entry) {
+        int slot = (int) (entry.deadlineTick & MASK);
+        if (entry.previous != null) {
+            entry.previous.next = entry.next;
+        } else {
+            slots[slot] = entry.next;
+        }
+        if (entry.next != null) {
+            entry.next.previous = entry.previous;
+        }
+        entry.previous = null;
+        entry.next = null;
+        entry.timer = null;
+        size--;
+    }
+
+    private static long now() {
+        return SystemClock.uptimeMillis();
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2017 sonvp
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.sonvp.tooltip;
+
+import android.support.v4.os.TraceCompat;
+
+/**
+ * Systrace sections of the tool tip. Off by default: a disabled section costs one static field
+ * read, section names are constants.
+ * <p/>
+ * The field is read once per section, by {@link #begin(String)}, whose result is passed to
+ * {@link #end(boolean)}: a section begun is always ended, even if tracing is switched off
+ * meanwhile.
+ */
+final class TooltipTrace {
+
+    static final String BUILD = "Tooltip#build";
+    static final String GRAVITY = "Tooltip#resolveGravity";
+    static final String MEASURE = "Tooltip#measure";
+    static final String BALANCE = "Tooltip#balance";
+    static final String POSITION = "Tooltip#updatePosition";
+    static final String SHOW = "Tooltip#show";
+    static final String DISMISS = "Tooltip#dismiss";
+
+    static boolean enabled = false;
+
+    private TooltipTrace() {
+    }
+
+    /**
+     * Begins a section if tracing is enabled.
+     *
+     * @return whether the section was begun, to pass to {@link #end(boolean)}
+     */
+    static boolean begin(String section) {
+        boolean traced = enabled;
+        if (traced) {
+            TraceCompat.beginSection(section);
+        }
+        return traced;
+    }
+
+    static void end(boolean traced) {
+        if (traced) {
+            TraceCompat.endSection();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.sonvp.tooltip;
+
+import android.graphics.Rect;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class AnchorIndexTest {
+
+    @Test
+    public void find_returnsTargetUnderTouch() throws Exception {
+        AnchorIndex index = new AnchorIndex(50);
+        index.put(1, 0, 0, 20, 20);
+        index.put(2, 100, 100, 120, 120);
+        index.put(3, -40, -40, -10, -10);
+
+        assertEquals(1, index.find(10, 10, 0));
+        assertEquals(2, index.find(119, 100, 0));
+        assertEquals(3, index.find(-20, -20, 0));
+        assertEquals(AnchorIndex.NO_TARGET, index.find(60, 60, 0));
+    }
+
+    @Test
+    public void find_withSlop_picksClosestCenter() throws Exception {
+        AnchorIndex index = new AnchorIndex(50);
+        index.put(1, 0, 0, 10, 10);
+        index.put(2, 14, 0, 24, 10);
+
+        assertEquals(AnchorIndex.NO_TARGET, index.find(12, 5, 0));
+        assertEquals(2, index.find(13, 5, 4));
+        assertEquals(1, index.find(11, 5, 4));
+    }
+
+    @Test
+    public void put_movesAndRemoveForgetsTargets() throws Exception {
+        AnchorIndex index = new AnchorIndex(50);
+        index.put(7, 0, 0, 10, 10);
+        index.put(7, 200, 200, 210, 210);
+
+        assertEquals(1, index.size());
+        assertEquals(AnchorIndex.NO_TARGET, index.find(5, 5, 0));
+        assertEquals(7, index.find(205, 205, 0));
+
+        Rect bounds = new Rect();
+        assertTrue(index.getBounds(7, bounds));
+        assertEquals(new Rect(200, 200, 210, 210), bounds);
+
+        index.remove(7);
+        assertEquals(0, index.size());
+        assertEquals(AnchorIndex.NO_TARGET, index.find(205, 205, 0));
+        assertFalse(index.getBounds(7, bounds));
+    }
+
+    @Test
+    public void find_manyTargets() throws Exception {
+        AnchorIndex index = new AnchorIndex(32);
+        for (int i = 0; i < 10000; i++) {
+            int x = (i % 100) * 20;
+            int y = (i / 100) * 20;
+            index.put(i, x, y, x + 10, y + 10);
+        }
+        for (int i = 0; i < 10000; i += 2) {
+            index.remove(i);
+        }
+
+        assertEquals(5000, index.size());
+        assertEquals(AnchorIndex.NO_TARGET, index.find(5, 5, 0));
+        assertEquals(1, index.find(25, 5, 0));
+        assertEquals(9999, index.find(1985, 1985, 0));
+    }
+
+    @Test
+    public void emptyTargets_onCellBoundary() throws Exception {
+        AnchorIndex index = new AnchorIndex(50);
+        // a vertical line, a horizontal line and a point, all on cell boundaries
+        index.put(1, 50, 0, 50, 40);
+        index.put(2, 0, 100, 40, 100);
+        index.put(3, 150, 150, 150, 150);
+
+        assertEquals(1, index.find(50, 20, 0));
+        assertEquals(1, index.find(47, 20, 4));
+        assertEquals(2, index.find(20, 100, 0));
+        assertEquals(3, index.find(150, 150, 0));
+        assertEquals(3, index.find(148, 152, 3));
+        assertEquals(AnchorIndex.NO_TARGET, index.find(151, 150, 0));
+
+        index.remove(3);
+        assertEquals(AnchorIndex.NO_TARGET, index.find(150, 150, 0));
+    }
+
+    @Test
+    public void movingTargets_freeEmptyCells() throws Exception {
+        AnchorIndex index = new AnchorIndex(10);
+        for (int i = 0; i < 1000; i++) {
+            index.put(1, i * 10, i * 10, i * 10 + 5, i * 10 + 5);
+            index.put(2, -i * 10, 0, -i * 10, 0);
+        }
+        assertEquals(2, index.getCellCount());
+        assertEquals(1, index.find(9992, 9992, 0));
+        assertEquals(2, index.find(-9990, 0, 0));
+
+        index.remove(1);
+        index.remove(2);
+        assertEquals(0, index.getCellCount());
+    }
+}
@@ -0,0 +1,99 @@
+package com.sonvp.tooltip;
+
+import android.app.Activity;
+import android.widget.FrameLayout;
+import android.widget.TextView;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class AnchorWaiterTest {
+
+    private Activity activity;
+    private FrameLayout content;
+
+    @Before
+    public void setUp() throws Exception {
+        activity = Robolectric.setupActivity(Activity.class);
+        content = new FrameLayout(activity);
+        activity.setContentView(content);
+        ShadowLooper.idleMainLooper();
+    }
+
+    @Test
+    public void showWhenReady_waitsForAttachAndLayout() throws Exception {
+        TextView anchor = TestAnchors.newTextAnchor(activity);
+        Tooltip tooltip = new Tooltip.Builder(activity)
+                .withAnchor(anchor)
+                .withText("Ready")
+                .withDismissOutsideTouch(false)
+                .build();
+        final Tooltip[] timedOut = new Tooltip[1];
+        tooltip.showWhenReady(5000L, new Tooltip.OnShowTimeoutListener() {
+            @Override
+            public void onShowTimeout(Tooltip tooltip) {
+                timedOut[0] = tooltip;
+            }
+        });
+        assertFalse(tooltip.isShowing());
+
+        TestAnchors.addTextAnchor(content, anchor);
+        assertFalse(tooltip.isShowing());
+        ShadowLooper.idleMainLooper(20L);
+        assertTrue(AnchorWaiter.isReady(anchor));
+        assertTrue(tooltip.isShowing());
+
+        ShadowLooper.idleMainLooper(5000L);
+        assertNull(timedOut[0]);
+        tooltip.remove();
+    }
+
+    @Test
+    public void showWhenReady_timesOut() throws Exception {
+        TextView anchor = TestAnchors.newTextAnchor(activity);
+        Tooltip tooltip = new Tooltip.Builder(activity)
+                .withAnchor(anchor)
+                .withText("Never")
+                .withDismissOutsideTouch(false)
+                .build();
+        final Tooltip[] timedOut = new Tooltip[1];
+        tooltip.showWhenReady(300L, new Tooltip.OnShowTimeoutListener() {
+            @Override
+            public void onShowTimeout(Tooltip tooltip) {
+                timedOut[0] = tooltip;
+            }
+        });
+        ShadowLooper.idleMainLooper(299L);
+        assertNull(timedOut[0]);
+        ShadowLooper.idleMainLooper(1L);
+        assertTrue(timedOut[0] == tooltip);
+        assertFalse(tooltip.isShowing());
+    }
+
+    @Test
+    public void remove_cancelsWait() throws Exception {
+        TextView anchor = TestAnchors.newTextAnchor(activity);
+        Tooltip tooltip = new Tooltip.Builder(activity)
+                .withAnchor(anchor)
+                .withText("Cancelled")
+                .withDismissOutsideTouch(false)
+                .build();
+        tooltip.showWhenReady(0L, null);
+        tooltip.remove();
+
+        TestAnchors.addTextAnchor(content, anchor);
+        ShadowLooper.idleMainLooper(100L);
+        assertFalse(tooltip.isShowing());
+    }
+}
@@ -0,0 +1,76 @@
+package com.sonvp.tooltip;
+
+import android.text.TextPaint;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class BalancedWrapTest {
+
+    private static final int CHAR_WIDTH = 10;
+
+    /**
+     * Every character is 10 pixels wide.
+     */
+    private static final class FixedWidthPaint extends TextPaint {
+
+        @Override
+        public int breakText(CharSequence text, int start, int end, boolean measureForwards, float maxWidth,
+                             float[] measuredWidth) {
+            return Math.min(end - start, (int) (maxWidth / CHAR_WIDTH));
+        }
+
+        @Override
+        public float measureText(CharSequence text, int start, int end) {
+            return (end - start) * CHAR_WIDTH;
+        }
+
+        @Override
+        public float measureText(String text) {
+            return text.length() * CHAR_WIDTH;
+        }
+    }
+
+    private final TextPaint paint = new FixedWidthPaint();
+    private final BalancedWrap wrap = new BalancedWrap();
+
+    @Test
+    public void countLines_breaksAtSpaces() throws Exception {
+        assertEquals(1, wrap.countLines("aaa bbb", paint, 70, Integer.MAX_VALUE));
+        assertEquals(2, wrap.countLines("aaa bbb", paint, 60, Integer.MAX_VALUE));
+        assertEquals(2, wrap.countLines("aaa bbb ccc", paint, 80, Integer.MAX_VALUE));
+        assertEquals(3, wrap.countLines("aaa\nbbb\nccc", paint, 1000, Integer.MAX_VALUE));
+        // a word wider than the line is broken
+        assertEquals(3, wrap.countLines("aaaaaaaaa", paint, 30, Integer.MAX_VALUE));
+        assertEquals(1, wrap.countLines("", paint, 30, Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void countLines_stopsPastLimit() throws Exception {
+        assertEquals(3, wrap.countLines("a b c d e f g h", paint, 10, 2));
+    }
+
+    @Test
+    public void balance_narrowestWidthWithSameLineCount() throws Exception {
+        // two lines at 400: a 39 character line and a 3 character one
+        String text = "aaaa bbbb cccc dddd eeee ffff gggg hhhh iii";
+        int width = wrap.balance(text, paint, 400);
+        assertEquals(2, wrap.getLineCount());
+        assertEquals(2, wrap.countLines(text, paint, width, Integer.MAX_VALUE));
+        assertTrue("width " + width, width <= 250);
+        assertTrue("passes " + wrap.getPassCount(), wrap.getPassCount() <= BalancedWrap.MAX_PASSES);
+    }
+
+    @Test
+    public void balance_singleLineKeepsMaxWidth() throws Exception {
+        assertEquals(400, wrap.balance("short", paint, 400));
+        assertEquals(1, wrap.getPassCount());
+    }
+}
@@ -0,0 +1,24 @@
+package com.sonvp.tooltip;
+
+import android.app.Activity;
+
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/**
+ * First show in a cold process, without prewarm.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class ColdFirstShowBenchmarkTest extends FirstShowBenchmark {
+
+    @Override
+    String arm() {
+        return "cold";
+    }
+
+    @Override
+    void beforeFirstShow(Activity activity) {
+    }
+}
@@ -0,0 +1,132 @@
+package com.sonvp.tooltip;
+
+import android.app.Activity;
+import android.view.Gravity;
+import android.view.View;
+
+import org.junit.Test;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Cost of the first tool tip shown in a process, compared with {@code prewarm-baseline.properties}.
+ * Each arm is a subclass, run by the {@code firstShowBenchmark} task of build.gradle in a JVM of
+ * its own, so that every arm starts from a cold process: {@link ColdFirstShowBenchmarkTest} shows
+ * right away, {@link PrewarmedFirstShowBenchmarkTest} runs {@link Tooltip#prewarm(Activity)}
+ * first. Both arms make the same assertion against their own baseline, and write their number to
+ * the results file, from which the task checks that the prewarmed arm is faster than the cold one.
+ * <p/>
+ * Switches (forwarded by build.gradle):
+ * <ul>
+ * <li>{@code -Dtooltip.prewarm.results=path} write the measured number of each arm, set by the task</li>
+ * <li>{@code -Dtooltip.prewarm.record=path} write the measured numbers as a new baseline</li>
+ * </ul>
+ */
+abstract class FirstShowBenchmark {
+
+    /**
+     * Name of the arm, prefix of its keys in the baseline.
+     */
+    abstract String arm();
+
+    /**
+     * Runs before the first tool tip is built; the time it takes is not measured.
+     */
+    abstract void beforeFirstShow(Activity activity);
+
+    @Test
+    public void firstShow_withinBaseline() throws Exception {
+        assertFalse("the " + arm() + " arm must run in its own JVM", Tooltip.isPrewarmed());
+
+        View anchor = setUpAnchor();
+        beforeFirstShow((Activity) anchor.getContext());
+        long firstShowMs = showOnce(anchor) / 1000000L;
+
+        String results = System.getProperty("tooltip.prewarm.results");
+        if (results != null && results.length() > 0) {
+            write(results, arm(), firstShowMs, false);
+        }
+        String record = System.getProperty("tooltip.prewarm.record");
+        if (record != null && record.length() > 0) {
+            write(record, arm(), firstShowMs, true);
+            return;
+        }
+
+        Properties baseline = loadBaseline();
+        long maxFirstShowMs = (long) (Long.parseLong(baseline.getProperty(arm() + ".firstShowMs"))
+                * (1.0 + Double.parseDouble(baseline.getProperty("tolerance"))));
+        assertTrue(arm() + " first show regressed: " + firstShowMs + " ms > " + maxFirstShowMs + " ms",
+                firstShowMs <= maxFirstShowMs);
+    }
+
+    private static View setUpAnchor() {
+        View anchor = TestAnchors.setUpLaidOutAnchor(Gravity.CENTER);
+        ShadowLooper.idleMainLooper();
+        return anchor;
+    }
+
+    private static long showOnce(View anchor) {
+        long start = System.nanoTime();
+        Tooltip tooltip = new Tooltip.Builder(anchor.getContext())
+                .withAnchor(anchor)
+                .withTooltipGravity(Gravity.BOTTOM)
+                .withText("Prewarm")
+                .build();
+        tooltip.show();
+        tooltip.updatePosition();
+        long elapsed = System.nanoTime() - start;
+        tooltip.remove();
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        return elapsed;
+    }
+
+    private static Properties loadBaseline() throws IOException {
+        Properties properties = new Properties();
+        InputStream in = FirstShowBenchmark.class.getResourceAsStream("prewarm-baseline.properties");
+        assertNotNull("missing prewarm-baseline.properties", in);
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+        return properties;
+    }
+
+    /**
+     * Adds the number of one arm to the baseline or results at path, keeping the numbers of the
+     * other arm.
+     */
+    private static void write(String path, String arm, long firstShowMs, boolean baseline) throws IOException {
+        Properties properties = new Properties();
+        File file = new File(path);
+        if (file.exists()) {
+            InputStream in = new FileInputStream(file);
+            try {
+                properties.load(in);
+            } finally {
+                in.close();
+            }
+        }
+        properties.setProperty(arm + ".firstShowMs", String.valueOf(firstShowMs));
+        if (baseline) {
+            properties.setProperty("tolerance", "1.0");
+        }
+        OutputStream out = new FileOutputStream(file);
+        try {
+            properties.store(out, baseline ? "FirstShowBenchmark baseline" : "FirstShowBenchmark results");
+        } finally {
+            out.close();
+        }
+    }
+}
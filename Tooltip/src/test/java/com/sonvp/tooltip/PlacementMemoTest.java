@@ -0,0 +1,91 @@
+package com.sonvp.tooltip;
+
+import android.app.Activity;
+import android.content.res.Configuration;
+import android.view.View;
+import android.widget.TextView;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class PlacementMemoTest {
+
+    private Activity activity;
+    private TextView anchor;
+
+    @Before
+    public void setUp() throws Exception {
+        Tooltip.clearPlacementMemo();
+        anchor = TestAnchors.setUpTextAnchor();
+        activity = (Activity) anchor.getContext();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Tooltip.clearPlacementMemo();
+    }
+
+    private Tooltip build(String text) {
+        return new Tooltip.Builder(activity).withAnchor(anchor).withText(text).build();
+    }
+
+    @Test
+    public void sameAnchorAndContent_hits() throws Exception {
+        build("Memo").updatePosition();
+        assertEquals(0, Tooltip.getPlacementMemoHitCount());
+        assertEquals(1, Tooltip.getPlacementMemoMissCount());
+
+        build("Memo").updatePosition();
+        build("Memo").updatePosition();
+        assertEquals(2, Tooltip.getPlacementMemoHitCount());
+        assertEquals(1, Tooltip.getPlacementMemoMissCount());
+    }
+
+    @Test
+    public void otherText_misses() throws Exception {
+        build("Memo").updatePosition();
+        build("Another memo").updatePosition();
+        assertEquals(0, Tooltip.getPlacementMemoHitCount());
+        assertEquals(2, Tooltip.getPlacementMemoMissCount());
+    }
+
+    @Test
+    public void anchorLayoutChange_invalidates() throws Exception {
+        build("Memo").updatePosition();
+        anchor.layout(anchor.getLeft(), anchor.getTop(), anchor.getLeft() + anchor.getWidth() + 50,
+                anchor.getBottom());
+        build("Memo").updatePosition();
+        assertEquals(0, Tooltip.getPlacementMemoHitCount());
+        assertEquals(2, Tooltip.getPlacementMemoMissCount());
+
+        build("Memo").updatePosition();
+        assertEquals(1, Tooltip.getPlacementMemoHitCount());
+    }
+
+    @Test
+    public void configurationChange_invalidates() throws Exception {
+        build("Memo").updatePosition();
+        activity.getApplication().onConfigurationChanged(new Configuration(activity.getResources().getConfiguration()));
+        build("Memo").updatePosition();
+        assertEquals(0, Tooltip.getPlacementMemoHitCount());
+        assertEquals(2, Tooltip.getPlacementMemoMissCount());
+    }
+
+    @Test
+    public void customView_notMemoized() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            new Tooltip.Builder(activity).withAnchor(anchor).withViewTooltip(new View(activity)).build()
+                    .updatePosition();
+        }
+        assertEquals(0, Tooltip.getPlacementMemoHitCount());
+        assertEquals(0, Tooltip.getPlacementMemoMissCount());
+    }
+}
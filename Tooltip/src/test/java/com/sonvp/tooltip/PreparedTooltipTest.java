@@ -0,0 +1,121 @@
+package com.sonvp.tooltip;
+
+import android.app.Activity;
+import android.view.Gravity;
+import android.view.View;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class PreparedTooltipTest {
+
+    private Activity activity;
+    private TextView anchor;
+
+    @Before
+    public void setUp() throws Exception {
+        anchor = TestAnchors.setUpTextAnchor(Gravity.CENTER);
+        activity = (Activity) anchor.getContext();
+    }
+
+    @Test
+    public void prepareOnWorker_attachOnUiThread() throws Exception {
+        final Tooltip.Builder builder = new Tooltip.Builder(activity)
+                .withAnchor(anchor)
+                .withText("Prepared off the UI thread")
+                .withTextSize(30.0F);
+        final AtomicReference<PreparedTooltip> prepared = new AtomicReference<PreparedTooltip>();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    prepared.set(builder.prepare());
+                } catch (Throwable t) {
+                    failure.set(t);
+                }
+            }
+        });
+        worker.start();
+        worker.join(5000L);
+        assertNull(failure.get());
+        assertNotNull(prepared.get());
+        assertTrue(prepared.get().getBubbleWidth() > 0);
+        assertTrue(prepared.get().getBubbleHeight() > 0);
+
+        Tooltip tooltip = prepared.get().attach();
+        assertTrue(tooltip.getContentView() instanceof StaticTextView);
+        assertEquals("Prepared off the UI thread", ((StaticTextView) tooltip.getContentView()).getText().toString());
+    }
+
+    @Test
+    public void prepare_isASnapshot() throws Exception {
+        Tooltip.Builder builder = new Tooltip.Builder(activity)
+                .withAnchor(anchor)
+                .withText("Before")
+                .withTextSize(30.0F);
+        PreparedTooltip prepared = builder.prepare();
+        builder.withText("After").withTooltipGravity(Gravity.TOP);
+
+        Tooltip tooltip = prepared.attach();
+        assertEquals("Before", ((StaticTextView) tooltip.getContentView()).getText().toString());
+        // Gravity.BOTTOM, the default: the arrow above the bubble
+        LinearLayout container = (LinearLayout) tooltip.getContentView().getParent();
+        assertSame(tooltip.getContentView(), container.getChildAt(1));
+    }
+
+    @Test
+    public void prepare_leavesStartAndEndToAttach() throws Exception {
+        Tooltip.Builder builder = new Tooltip.Builder(activity)
+                .withAnchor(anchor)
+                .withText("Start")
+                .withTextSize(30.0F)
+                .withTooltipGravity(Gravity.START);
+        PreparedTooltip prepared = builder.prepare();
+        // the builder is not resolved by prepare()
+        assertEquals(Gravity.START, builder.toBundle().getInt("tooltipGravity"));
+
+        // the layout direction changes between prepare() and attach()
+        anchor.setLayoutDirection(View.LAYOUT_DIRECTION_RTL);
+        Tooltip tooltip = prepared.attach();
+
+        // start in RTL is Gravity.RIGHT: the arrow left of the bubble
+        LinearLayout container = (LinearLayout) tooltip.getContentView().getParent();
+        assertEquals(LinearLayout.HORIZONTAL, container.getOrientation());
+        assertSame(tooltip.getContentView(), container.getChildAt(1));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void attach_onlyOnce() throws Exception {
+        PreparedTooltip prepared = new Tooltip.Builder(activity)
+                .withAnchor(anchor)
+                .withText("Once")
+                .prepare();
+        prepared.attach();
+        prepared.attach();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void prepare_rejectsUnsupportedGravity() throws Exception {
+        new Tooltip.Builder(activity)
+                .withAnchor(anchor)
+                .withText("Center")
+                .withTooltipGravity(Gravity.CENTER)
+                .prepare();
+    }
+}
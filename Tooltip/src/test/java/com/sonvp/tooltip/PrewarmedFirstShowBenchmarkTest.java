@@ -0,0 +1,29 @@
+package com.sonvp.tooltip;
+
+import android.app.Activity;
+
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * First show in a cold process, after {@link Tooltip#prewarm(Activity)}. Robolectric does not
+ * run idle handlers, so the prewarm work is called directly.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class PrewarmedFirstShowBenchmarkTest extends FirstShowBenchmark {
+
+    @Override
+    String arm() {
+        return "prewarmed";
+    }
+
+    @Override
+    void beforeFirstShow(Activity activity) {
+        Tooltip.prewarmNow(activity);
+        assertTrue(Tooltip.isPrewarmed());
+    }
+}
@@ -0,0 +1,186 @@
+package com.sonvp.tooltip;
+
+import android.app.Activity;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Typeface;
+import android.text.Layout;
+import android.text.SpannableString;
+import android.text.Spanned;
+import android.text.TextPaint;
+import android.text.style.StyleSpan;
+import android.view.View;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class ScrollingTextViewTest {
+
+    private static final int MAX_HEIGHT = 300;
+
+    /**
+     * Counts the characters measured to break and draw lines.
+     */
+    private static final class CountingPaint extends TextPaint {
+        long measured;
+
+        CountingPaint() {
+            super(PreparedTooltip.createPaint(30.0F, Color.WHITE, Typeface.DEFAULT, Typeface.NORMAL));
+        }
+
+        @Override
+        public int breakText(CharSequence text, int start, int end, boolean measureForwards,
+                             float maxWidth, float[] measuredWidth) {
+            measured += end - start;
+            return super.breakText(text, start, end, measureForwards, maxWidth, measuredWidth);
+        }
+
+        @Override
+        public float measureText(CharSequence text, int start, int end) {
+            measured += end - start;
+            return super.measureText(text, start, end);
+        }
+    }
+
+    @Test
+    public void measure_longText_breaksOnlyVisibleLines() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            text.append("word").append(i).append(i % 10 == 9 ? '\n' : ' ');
+        }
+        ScrollingTextView view = create(text);
+        measureAndLayout(view);
+
+        assertEquals(MAX_HEIGHT, view.getMeasuredHeight(), 40);
+        int brokenAfterMeasure = view.getBrokenLineCount();
+        // the text has at least 2000 lines
+        assertTrue("broke " + brokenAfterMeasure + " lines", brokenAfterMeasure < 400);
+
+        view.draw(new Canvas(Bitmap.createBitmap(400, MAX_HEIGHT, Bitmap.Config.ARGB_8888)));
+        assertEquals(brokenAfterMeasure, view.getBrokenLineCount());
+
+        view.scrollTo(0, 2000);
+        assertEquals(2000, view.getScrollY());
+        assertTrue(view.getBrokenLineCount() > brokenAfterMeasure);
+        assertTrue(view.getBrokenLineCount() < 2000 + 400);
+        assertTrue(view.getBrokenLineCount() <= brokenAfterMeasure + 2000);
+    }
+
+    @Test
+    public void measure_longParagraph_looksOnlyAtVisibleLines() throws Exception {
+        // a single paragraph, no new line to stop at
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; text.length() < 100000; i++) {
+            text.append("word").append(i).append(' ');
+        }
+        CountingPaint paint = new CountingPaint();
+        ScrollingTextView view = create(text, paint, 400);
+        measureAndLayout(view);
+
+        int brokenAfterMeasure = view.getBrokenLineCount();
+        assertTrue("broke " + brokenAfterMeasure + " lines", brokenAfterMeasure < 400);
+        // each line looks at a window of the text, not at the rest of the paragraph
+        assertTrue("measured " + paint.measured + " characters for " + brokenAfterMeasure + " lines",
+                paint.measured < brokenAfterMeasure * 4096L);
+
+        paint.measured = 0L;
+        view.scrollTo(0, 2000);
+        int broken = view.getBrokenLineCount() - brokenAfterMeasure;
+        assertTrue(broken > 0);
+        assertTrue("measured " + paint.measured + " characters for " + broken + " lines",
+                paint.measured < broken * 4096L);
+    }
+
+    @Test
+    public void measure_shortText_wrapsContent() throws Exception {
+        ScrollingTextView view = create("Short");
+        measureAndLayout(view);
+
+        assertTrue(view.getMeasuredHeight() < MAX_HEIGHT);
+        assertTrue(view.getMeasuredWidth() < 400);
+        assertEquals(1, view.getBrokenLineCount());
+
+        view.scrollTo(0, 100);
+        assertEquals(0, view.getScrollY());
+    }
+
+    @Test
+    public void scrollTo_stopsAtLastLine() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            text.append("line ").append(i).append('\n');
+        }
+        ScrollingTextView view = create(text);
+        measureAndLayout(view);
+
+        view.scrollTo(0, Integer.MAX_VALUE / 2);
+        int bottom = view.getScrollY();
+        assertTrue(bottom > 0 && bottom < Integer.MAX_VALUE / 2);
+
+        view.setText("Replaced");
+        assertEquals(0, view.getScrollY());
+    }
+
+    @Test
+    public void measure_onePixelWide_breaksEveryCharacter() throws Exception {
+        ScrollingTextView view = create("ab c", 1);
+        view.measure(View.MeasureSpec.makeMeasureSpec(21, View.MeasureSpec.AT_MOST),
+                View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+        view.layout(0, 0, view.getMeasuredWidth(), view.getMeasuredHeight());
+        view.scrollTo(0, Integer.MAX_VALUE / 2);
+
+        // "a", "b", "c": the space is skipped, the last character is a line of its own
+        assertEquals(3, view.getBrokenLineCount());
+
+        view.setText("a");
+        view.measure(View.MeasureSpec.makeMeasureSpec(21, View.MeasureSpec.AT_MOST),
+                View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+        assertEquals(1, view.getBrokenLineCount());
+    }
+
+    @Test
+    public void setText_dropsSpans() throws Exception {
+        SpannableString text = new SpannableString("bold and plain");
+        text.setSpan(new StyleSpan(Typeface.BOLD), 0, 4, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+
+        ScrollingTextView view = create(text);
+        assertFalse(view.getText() instanceof Spanned);
+        assertEquals("bold and plain", view.getText().toString());
+
+        view.setText(text);
+        assertFalse(view.getText() instanceof Spanned);
+    }
+
+    private static ScrollingTextView create(CharSequence text) {
+        return create(text, 400);
+    }
+
+    private static ScrollingTextView create(CharSequence text, int maxTextWidth) {
+        return create(text, PreparedTooltip.createPaint(30.0F, Color.WHITE, Typeface.DEFAULT, Typeface.NORMAL),
+                maxTextWidth);
+    }
+
+    private static ScrollingTextView create(CharSequence text, TextPaint paint, int maxTextWidth) {
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        ScrollingTextView view = new ScrollingTextView(activity, text, paint,
+                Layout.Alignment.ALIGN_NORMAL, maxTextWidth, MAX_HEIGHT);
+        view.setPadding(10, 10, 10, 10);
+        return view;
+    }
+
+    private static void measureAndLayout(View view) {
+        view.measure(View.MeasureSpec.makeMeasureSpec(420, View.MeasureSpec.AT_MOST),
+                View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+        view.layout(0, 0, view.getMeasuredWidth(), view.getMeasuredHeight());
+    }
+}
@@ -0,0 +1,82 @@
+package com.sonvp.tooltip;
+
+import android.app.Activity;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+import android.widget.TextView;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class SpotlightViewTest {
+
+    private Activity activity;
+
+    @Before
+    public void setUp() throws Exception {
+        activity = Robolectric.setupActivity(Activity.class);
+    }
+
+    @Test
+    public void setHole_paddedAroundAnchor() throws Exception {
+        SpotlightView spotlight = new SpotlightView(activity, Tooltip.SPOTLIGHT_ROUND_RECT, 0xB3000000, 10.0F);
+        spotlight.setHole(new Rect(100, 200, 300, 250));
+        RectF hole = spotlight.getHole();
+        assertEquals(90.0F, hole.left, 0.0F);
+        assertEquals(190.0F, hole.top, 0.0F);
+        assertEquals(310.0F, hole.right, 0.0F);
+        assertEquals(260.0F, hole.bottom, 0.0F);
+    }
+
+    @Test
+    public void setHole_slidesToNewAnchor() throws Exception {
+        FrameLayout content = new FrameLayout(activity);
+        activity.setContentView(content);
+        SpotlightView spotlight = new SpotlightView(activity, Tooltip.SPOTLIGHT_CIRCLE, 0xB3000000, 0.0F);
+        content.addView(spotlight, new FrameLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+                ViewGroup.LayoutParams.MATCH_PARENT));
+
+        spotlight.setHole(new Rect(0, 0, 100, 100));
+        spotlight.setHole(new Rect(200, 200, 300, 300));
+        assertTrue(spotlight.isMoving());
+        ShadowLooper.idleMainLooper(SpotlightView.MOVE_DURATION);
+        assertEquals(200.0F, spotlight.getHole().left, 0.5F);
+        assertEquals(300.0F, spotlight.getHole().bottom, 0.5F);
+    }
+
+    @Test
+    public void withSpotlight_overlayDimsAroundAnchor() throws Exception {
+        FrameLayout content = new FrameLayout(activity);
+        TextView anchor = new TextView(activity);
+        content.addView(anchor, new FrameLayout.LayoutParams(200, 100));
+        activity.setContentView(content);
+        ViewGroup root = (ViewGroup) anchor.getRootView();
+
+        Tooltip tooltip = new Tooltip.Builder(activity)
+                .withAnchor(anchor)
+                .withText("Spotlight")
+                .withSpotlight(Tooltip.SPOTLIGHT_RECT)
+                .build();
+        SpotlightView spotlight = null;
+        for (int i = 0; i < root.getChildCount(); i++) {
+            if (root.getChildAt(i) instanceof SpotlightView) {
+                spotlight = (SpotlightView) root.getChildAt(i);
+            }
+        }
+        assertNotNull(spotlight);
+        tooltip.remove();
+    }
+}
@@ -0,0 +1,92 @@
+package com.sonvp.tooltip;
+
+import android.app.Activity;
+import android.content.Context;
+import android.view.Gravity;
+import android.view.View;
+import android.widget.FrameLayout;
+import android.widget.TextView;
+
+import org.robolectric.Robolectric;
+
+/**
+ * Activities and anchors the tests show tool tips on. The activity of an anchor is its context.
+ */
+final class TestAnchors {
+
+    static final int DISPLAY_WIDTH = 1080;
+    static final int DISPLAY_HEIGHT = 1920;
+
+    private static final int TEXT_ANCHOR_WIDTH = 200;
+    private static final int TEXT_ANCHOR_HEIGHT = 100;
+
+    private TestAnchors() {
+    }
+
+    /**
+     * Returns a text view reading "Anchor", not attached.
+     */
+    static TextView newTextAnchor(Context context) {
+        TextView anchor = new TextView(context);
+        anchor.setText("Anchor");
+        return anchor;
+    }
+
+    /**
+     * Sets up an activity showing a text anchor at the top left of its content.
+     */
+    static TextView setUpTextAnchor() {
+        return setUpTextAnchor(Gravity.NO_GRAVITY);
+    }
+
+    /**
+     * Sets up an activity showing a text anchor, 200x100, placed in its content by gravity.
+     */
+    static TextView setUpTextAnchor(int gravity) {
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        FrameLayout content = new FrameLayout(activity);
+        TextView anchor = newTextAnchor(activity);
+        addTextAnchor(content, anchor, gravity);
+        activity.setContentView(content);
+        return anchor;
+    }
+
+    /**
+     * Adds a text anchor, 200x100, at the top left of content.
+     */
+    static void addTextAnchor(FrameLayout content, TextView anchor) {
+        addTextAnchor(content, anchor, Gravity.NO_GRAVITY);
+    }
+
+    private static void addTextAnchor(FrameLayout content, TextView anchor, int gravity) {
+        content.addView(anchor, new FrameLayout.LayoutParams(TEXT_ANCHOR_WIDTH, TEXT_ANCHOR_HEIGHT, gravity));
+    }
+
+    /**
+     * Sets up an activity with a 120x60 anchor placed by gravity in a content laid out right
+     * away, see {@link #layOut(View)}.
+     */
+    static View setUpLaidOutAnchor(int gravity) {
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        FrameLayout root = new FrameLayout(activity);
+        View anchor = new View(activity);
+        root.addView(anchor, new FrameLayout.LayoutParams(120, 60, gravity));
+        activity.setContentView(root);
+        layOut(root);
+        return anchor;
+    }
+
+    /**
+     * Measures and lays out a view as the content of a 1080x1920 display, without waiting for a
+     * layout pass.
+     */
+    static void layOut(View root) {
+        layOut(root, DISPLAY_WIDTH, DISPLAY_HEIGHT);
+    }
+
+    static void layOut(View root, int width, int height) {
+        root.measure(View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(height, View.MeasureSpec.EXACTLY));
+        root.layout(0, 0, width, height);
+    }
+}
@@ -0,0 +1,192 @@
+package com.sonvp.tooltip;
+
+import android.app.Activity;
+import android.graphics.Rect;
+import android.os.SystemClock;
+import android.view.Gravity;
+import android.view.MotionEvent;
+import android.view.View;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Allocation budgets for the repositioning and touch hot paths. Bytes are counted per thread
+ * with {@link com.sun.management.ThreadMXBean}, after a warm up, and divided by the number of
+ * iterations.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class TooltipAllocationTest {
+
+    private static final int WARM_UP = 2000;
+    private static final int ITERATIONS = 10000;
+
+    // steady-state budgets, in bytes per operation
+    private static final long BUDGET_ANCHOR_RECT = 0;
+    private static final long BUDGET_PLACEMENT = 0;
+    private static final long BUDGET_TOUCH_HIT_TEST = 0;
+    private static final long BUDGET_TOUCH = 0;
+    private static final long BUDGET_UPDATE_POSITION = 0;
+
+    private Activity activity;
+    private View anchor;
+    private Tooltip tooltip;
+
+    @Before
+    public void setUp() throws Exception {
+        Tooltip.clearPlacementMemo();
+        anchor = TestAnchors.setUpLaidOutAnchor(Gravity.CENTER);
+        activity = (Activity) anchor.getContext();
+
+        tooltip = new Tooltip.Builder(activity)
+                .withAnchor(anchor)
+                .withText("Tooltip 11111 111111 111111 111111")
+                .withTooltipGravity(Gravity.RIGHT)
+                .build();
+        tooltip.show();
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        tooltip.remove();
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+    }
+
+    @Test
+    public void anchorRect_isAllocationFree() throws Exception {
+        assertBudget("anchor rect", BUDGET_ANCHOR_RECT, new Runnable() {
+            @Override
+            public void run() {
+                tooltip.updateAnchorRect();
+            }
+        });
+    }
+
+    @Test
+    public void placement_isAllocationFree() throws Exception {
+        final Placement placement = new Placement();
+        placement.setDisplay(TestAnchors.DISPLAY_WIDTH, TestAnchors.DISPLAY_HEIGHT, 48);
+        assertBudget("placement", BUDGET_PLACEMENT, new Runnable() {
+            @Override
+            public void run() {
+                placement.placeVertical(Gravity.TOP, 300, 100, 30, 30);
+                placement.placeSideHorizontal(Gravity.LEFT, 300, 30, 8);
+                placement.placeSideVertical(Gravity.LEFT, Gravity.CENTER, 100, 30, 330, 8);
+            }
+        });
+    }
+
+    @Test
+    public void touchHitTest_isAllocationFree() throws Exception {
+        assertBudget("touch hit test", BUDGET_TOUCH_HIT_TEST, new Runnable() {
+            @Override
+            public void run() {
+                tooltip.isTouchOnAnchor(540, 960);
+                tooltip.isTouchOnAnchor(0, 0);
+            }
+        });
+    }
+
+    @Test
+    public void touch_isAllocationFree() throws Exception {
+        final View container = (View) tooltip.getContentView().getParent();
+        long now = SystemClock.uptimeMillis();
+        final MotionEvent down = MotionEvent.obtain(now, now, MotionEvent.ACTION_DOWN, 10.0F, 10.0F, 0);
+        final MotionEvent move = MotionEvent.obtain(now, now, MotionEvent.ACTION_MOVE, 12.0F, 10.0F, 0);
+        final MotionEvent up = MotionEvent.obtain(now, now, MotionEvent.ACTION_UP, 12.0F, 10.0F, 0);
+        final MotionEvent hoverEnter = MotionEvent.obtain(now, now, MotionEvent.ACTION_HOVER_ENTER, 10.0F, 10.0F, 0);
+        final MotionEvent hoverExit = MotionEvent.obtain(now, now, MotionEvent.ACTION_HOVER_EXIT, 10.0F, 10.0F, 0);
+        try {
+            assertBudget("touch", BUDGET_TOUCH, new Runnable() {
+                @Override
+                public void run() {
+                    tooltip.onTouch(container, down);
+                    tooltip.onTouch(container, move);
+                    tooltip.onTouch(container, up);
+                    // touches inside the content, and on a view that is neither container nor overlay
+                    tooltip.onTouch(tooltip.getContentView(), move);
+                    tooltip.onTouch(anchor, move);
+                    tooltip.onHover(container, hoverEnter);
+                    tooltip.onHover(container, hoverExit);
+                }
+            });
+        } finally {
+            down.recycle();
+            move.recycle();
+            up.recycle();
+            hoverEnter.recycle();
+            hoverExit.recycle();
+        }
+        assertTrue(tooltip.isShowing());
+    }
+
+    @Test
+    public void updatePosition_isAllocationFree() throws Exception {
+        assertBudget("update position", BUDGET_UPDATE_POSITION, new Runnable() {
+            @Override
+            public void run() {
+                tooltip.updatePosition();
+            }
+        });
+    }
+
+    @Test
+    public void updatePosition_measured_isAllocationFree() throws Exception {
+        // placements on virtual anchors are not memoized, each one measures and places again
+        final Tooltip virtual = new Tooltip.Builder(activity)
+                .withAnchor(Anchor.of((View) anchor.getParent(), new Rect(100, 100, 220, 160)))
+                .withText("Tooltip 11111 111111 111111 111111")
+                .withTooltipGravity(Gravity.RIGHT)
+                .build();
+        virtual.show();
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        try {
+            assertBudget("measured update position", BUDGET_UPDATE_POSITION, new Runnable() {
+                @Override
+                public void run() {
+                    virtual.updatePosition();
+                }
+            });
+            assertEquals(0, Tooltip.getPlacementMemoHitCount());
+        } finally {
+            virtual.remove();
+        }
+    }
+
+    private static void assertBudget(String phase, long bytesPerOp, Runnable op) {
+        for (int i = 0; i < WARM_UP; i++) {
+            op.run();
+        }
+
+        long overhead = allocatedBytes();
+        overhead = allocatedBytes() - overhead;
+
+        long start = allocatedBytes();
+        for (int i = 0; i < ITERATIONS; i++) {
+            op.run();
+        }
+        long allocated = allocatedBytes() - start - overhead;
+
+        assertTrue(phase + " allocated " + allocated + " bytes in " + ITERATIONS
+                        + " ops, budget is " + bytesPerOp + " bytes/op",
+                allocated <= bytesPerOp * ITERATIONS);
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean bean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
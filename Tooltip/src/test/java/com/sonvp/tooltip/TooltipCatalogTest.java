@@ -0,0 +1,258 @@
+package com.sonvp.tooltip;
+
+import android.app.Activity;
+import android.graphics.Color;
+import android.graphics.Typeface;
+import android.os.Bundle;
+import android.util.TypedValue;
+import android.view.Gravity;
+import android.view.View;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Reads the catalog compiled by {@code tooltip-catalog.gradle} from {@code src/test/tooltips/},
+ * and reports the cost of opening a large catalog and looking definitions up.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class TooltipCatalogTest {
+
+    private static final int BENCHMARK_SIZE = 2000;
+    private static final int BENCHMARK_LOOKUPS = 100000;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void newBuilder_appliesJsonDefinition() throws Exception {
+        TooltipCatalog catalog = TooltipCatalog.open(compiledCatalog());
+        Activity activity = Robolectric.setupActivity(Activity.class);
+
+        assertEquals(6, catalog.size());
+        assertTrue(catalog.contains("onboarding.search"));
+        assertFalse(catalog.contains("missing"));
+        assertNull(catalog.newBuilder(activity, "missing"));
+
+        Bundle state = catalog.newBuilder(activity, "onboarding.search").toBundle();
+        assertEquals("Search here", String.valueOf(state.getCharSequence("text")));
+        assertEquals(Gravity.TOP, state.getInt("tooltipGravity"));
+        assertEquals(Color.rgb(0x3F, 0x51, 0xB5), state.getInt("backgroundColor"));
+        assertEquals(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, 14.0F,
+                activity.getResources().getDisplayMetrics()), state.getFloat("textSize"), 0.001F);
+        assertEquals(3000L, state.getLong("duration"));
+        assertEquals("onboarding.search", state.getString("id"));
+
+        state = catalog.newBuilder(activity, "onboarding.menu").toBundle();
+        assertEquals(Gravity.START, state.getInt("tooltipGravity"));
+        assertEquals(Gravity.CENTER, state.getInt("arrowGravity"));
+        assertEquals(Color.argb(0x80, 0xFF, 0xFF, 0xFF), state.getInt("textColor"));
+        assertEquals(Typeface.BOLD, state.getInt("typefaceStyle"));
+    }
+
+    @Test
+    public void newBuilder_appliesXmlDefinition() throws Exception {
+        TooltipCatalog catalog = TooltipCatalog.open(compiledCatalog());
+        Activity activity = Robolectric.setupActivity(Activity.class);
+
+        Bundle state = catalog.newBuilder(activity, "help.filter").toBundle();
+        assertEquals("Filter the list", String.valueOf(state.getCharSequence("text")));
+        assertEquals(Gravity.BOTTOM, state.getInt("tooltipGravity"));
+        assertEquals(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, 120.0F,
+                activity.getResources().getDisplayMetrics()), state.getFloat("maxHeight"), 0.001F);
+
+        assertNotNull(catalog.newBuilder(activity, "help.empty"));
+        assertEquals(View.NO_ID, catalog.getTargetId(activity, "help.empty"));
+        // no such id in the test resources
+        assertEquals(View.NO_ID, catalog.getTargetId(activity, "help.filter"));
+    }
+
+    @Test
+    public void find_handlesHashCollisions() throws Exception {
+        // "Aa" and "BB" have the same String hash code
+        TooltipCatalog catalog = TooltipCatalog.open(compiledCatalog());
+        assertTrue(catalog.find("Aa") >= 0);
+        assertTrue(catalog.find("BB") >= 0);
+        assertTrue(catalog.find("Aa") != catalog.find("BB"));
+        assertEquals(-1, catalog.find("C#"));
+    }
+
+    @Test(expected = IOException.class)
+    public void open_rejectsOtherFiles() throws Exception {
+        File file = folder.newFile();
+        FileOutputStream output = new FileOutputStream(file);
+        output.write(new byte[64]);
+        output.close();
+        TooltipCatalog.open(file);
+    }
+
+    @Test
+    public void benchmark_openAndLookup() throws Exception {
+        Definition[] definitions = new Definition[BENCHMARK_SIZE];
+        for (int i = 0; i < BENCHMARK_SIZE; i++) {
+            definitions[i] = new Definition("help.screen" + (i / 20) + ".item" + i);
+            definitions[i].text = "Tool tip number " + i + " explains one control of the screen.";
+            definitions[i].gravity = Gravity.BOTTOM;
+        }
+        File file = write(definitions);
+        Activity activity = Robolectric.setupActivity(Activity.class);
+
+        long start = System.nanoTime();
+        TooltipCatalog catalog = TooltipCatalog.open(file);
+        long open = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        int found = 0;
+        for (int i = 0; i < BENCHMARK_LOOKUPS; i++) {
+            if (catalog.find(definitions[(i * 7919) % BENCHMARK_SIZE].id) >= 0) {
+                found++;
+            }
+        }
+        long lookups = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_SIZE; i++) {
+            assertNotNull(catalog.newBuilder(activity, definitions[i].id));
+        }
+        long builders = System.nanoTime() - start;
+
+        System.out.println(String.format(
+                "TooltipCatalogTest: %d definitions, %d bytes, open %.3f ms, lookup %.0f ns, newBuilder %.0f ns",
+                BENCHMARK_SIZE, file.length(), open / 1e6, (double) lookups / BENCHMARK_LOOKUPS,
+                (double) builders / BENCHMARK_SIZE));
+
+        assertEquals(BENCHMARK_LOOKUPS, found);
+        // opening does not depend on the number of definitions
+        assertTrue("open took " + open + " ns", open < 50000000L);
+    }
+
+    /**
+     * A definition of the benchmark catalog, too large to be kept in src/test/tooltips/.
+     */
+    private static final class Definition {
+        final String id;
+        String text;
+        int gravity = -1;
+
+        Definition(String id) {
+            this.id = id;
+        }
+    }
+
+    /**
+     * Copies the catalog compiled from src/test/tooltips/ to a file, to be memory-mapped.
+     */
+    private File compiledCatalog() throws IOException {
+        InputStream in = TooltipCatalogTest.class.getResourceAsStream("/tooltips.catalog");
+        assertNotNull("missing tooltips.catalog, compiled by tooltip-catalog.gradle", in);
+        File file = folder.newFile();
+        FileOutputStream output = new FileOutputStream(file);
+        try {
+            byte[] chunk = new byte[8192];
+            int read;
+            while ((read = in.read(chunk)) != -1) {
+                output.write(chunk, 0, read);
+            }
+        } finally {
+            output.close();
+            in.close();
+        }
+        return file;
+    }
+
+    /**
+     * Writes a catalog in the format of tooltip-catalog.gradle.
+     */
+    private File write(Definition... definitions) throws IOException {
+        List<Definition> sorted = new ArrayList<Definition>();
+        Collections.addAll(sorted, definitions);
+        Collections.sort(sorted, new Comparator<Definition>() {
+            @Override
+            public int compare(Definition a, Definition b) {
+                int byHash = a.id.hashCode() < b.id.hashCode() ? -1 : (a.id.hashCode() == b.id.hashCode() ? 0 : 1);
+                return byHash != 0 ? byHash : a.id.compareTo(b.id);
+            }
+        });
+
+        ByteArrayOutputStream strings = new ByteArrayOutputStream();
+        Map<String, Integer> refs = new HashMap<String, Integer>();
+        int count = sorted.size();
+        ByteBuffer index = ByteBuffer.allocate(count * TooltipCatalog.INDEX_ENTRY_SIZE);
+        ByteBuffer records = ByteBuffer.allocate(count * TooltipCatalog.RECORD_SIZE);
+        for (int i = 0; i < count; i++) {
+            Definition definition = sorted.get(i);
+            index.putInt(definition.id.hashCode());
+            index.putInt(intern(definition.id, strings, refs));
+
+            int record = i * TooltipCatalog.RECORD_SIZE;
+            int flags = 0;
+            records.putInt(record + TooltipCatalog.TEXT, TooltipCatalog.NO_STRING);
+            records.putInt(record + TooltipCatalog.TARGET, TooltipCatalog.NO_STRING);
+            if (definition.text != null) {
+                flags |= TooltipCatalog.HAS_TEXT;
+                records.putInt(record + TooltipCatalog.TEXT, intern(definition.text, strings, refs));
+            }
+            if (definition.gravity >= 0) {
+                flags |= TooltipCatalog.HAS_GRAVITY;
+                records.putInt(record + TooltipCatalog.GRAVITY, definition.gravity);
+            }
+            records.putInt(record + TooltipCatalog.FLAGS, flags);
+        }
+
+        int indexOffset = TooltipCatalog.HEADER_SIZE;
+        int recordsOffset = indexOffset + index.capacity();
+        int stringsOffset = recordsOffset + records.capacity();
+        ByteBuffer out = ByteBuffer.allocate(stringsOffset + strings.size());
+        out.putInt(TooltipCatalog.MAGIC).putInt(TooltipCatalog.VERSION).putInt(count)
+                .putInt(indexOffset).putInt(recordsOffset).putInt(stringsOffset);
+        out.put(index.array()).put(records.array()).put(strings.toByteArray());
+
+        File file = folder.newFile();
+        FileOutputStream output = new FileOutputStream(file);
+        try {
+            output.write(out.array());
+        } finally {
+            output.close();
+        }
+        return file;
+    }
+
+    private static int intern(String value, ByteArrayOutputStream strings, Map<String, Integer> refs)
+            throws IOException {
+        Integer ref = refs.get(value);
+        if (ref == null) {
+            byte[] bytes = value.getBytes(Charset.forName("UTF-8"));
+            ref = strings.size();
+            strings.write(ByteBuffer.allocate(4).putInt(bytes.length).array());
+            strings.write(bytes);
+            refs.put(value, ref);
+        }
+        return ref;
+    }
+}
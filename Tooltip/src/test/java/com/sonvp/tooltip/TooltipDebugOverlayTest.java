@@ -0,0 +1,90 @@
+package com.sonvp.tooltip;
+
+import android.app.Activity;
+import android.view.Gravity;
+import android.view.View;
+import android.view.ViewGroup;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class TooltipDebugOverlayTest {
+
+    private Activity activity;
+    private View anchor;
+
+    @Before
+    public void setUp() throws Exception {
+        Tooltip.setDebugOverlayEnabled(true);
+        // at the top of the display: no room above
+        anchor = TestAnchors.setUpLaidOutAnchor(Gravity.TOP | Gravity.CENTER_HORIZONTAL);
+        activity = (Activity) anchor.getContext();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Tooltip.setDebugOverlayEnabled(false);
+    }
+
+    @Test
+    public void overlay_showsTheRuleThatRejectedTheGravity() throws Exception {
+        Tooltip tooltip = new Tooltip.Builder(activity)
+                .withAnchor(anchor)
+                .withText("Tooltip")
+                .withTooltipGravity(Gravity.TOP)
+                .build();
+        tooltip.show();
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+
+        TooltipDebugOverlay overlay = findOverlay(anchor.getRootView());
+        assertNotNull(overlay);
+        assertEquals(TooltipDebugOverlay.RULE_NO_ROOM_ABOVE, overlay.getRejection(Gravity.TOP));
+        assertEquals(TooltipDebugOverlay.RULE_NONE, overlay.getRejection(Gravity.BOTTOM));
+        assertEquals(TooltipDebugOverlay.RULE_NONE, overlay.getRejection(Gravity.LEFT));
+        assertEquals(TooltipDebugOverlay.RULE_NONE, overlay.getRejection(Gravity.RIGHT));
+        tooltip.remove();
+    }
+
+    @Test
+    public void overlay_nothingRejected() throws Exception {
+        Tooltip tooltip = new Tooltip.Builder(activity)
+                .withAnchor(anchor)
+                .withText("Tooltip")
+                .withTooltipGravity(Gravity.BOTTOM)
+                .build();
+        tooltip.show();
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+
+        TooltipDebugOverlay overlay = findOverlay(anchor.getRootView());
+        assertNotNull(overlay);
+        assertEquals(TooltipDebugOverlay.RULE_NONE, overlay.getRejection(Gravity.TOP));
+        assertEquals(TooltipDebugOverlay.RULE_NONE, overlay.getRejection(Gravity.BOTTOM));
+        tooltip.remove();
+    }
+
+    private static TooltipDebugOverlay findOverlay(View view) {
+        if (view instanceof TooltipDebugOverlay) {
+            return (TooltipDebugOverlay) view;
+        }
+        if (view instanceof ViewGroup) {
+            ViewGroup group = (ViewGroup) view;
+            for (int i = 0; i < group.getChildCount(); i++) {
+                TooltipDebugOverlay overlay = findOverlay(group.getChildAt(i));
+                if (overlay != null) {
+                    return overlay;
+                }
+            }
+        }
+        return null;
+    }
+}
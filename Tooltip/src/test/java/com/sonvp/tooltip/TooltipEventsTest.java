@@ -0,0 +1,214 @@
+package com.sonvp.tooltip;
+
+import android.app.Activity;
+import android.view.Gravity;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class TooltipEventsTest {
+
+    /**
+     * Copies the events out of the reused batches.
+     */
+    private static final class Recorder implements TooltipEvents.Consumer {
+        final List<int[]> events = new ArrayList<int[]>();
+        final List<String> ids = new ArrayList<String>();
+        int batches;
+        int dropped;
+        boolean interrupted;
+        volatile CountDownLatch release = new CountDownLatch(0);
+
+        @Override
+        public void onEvents(TooltipEvents.Batch batch) {
+            synchronized (this) {
+                batches++;
+                dropped += batch.getDroppedCount();
+                interrupted |= Thread.currentThread().isInterrupted();
+                for (int i = 0; i < batch.size(); i++) {
+                    events.add(new int[]{batch.getType(i), batch.getReason(i)});
+                    ids.add(batch.getId(i));
+                }
+            }
+            // a slow consumer, until released
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private TooltipEvents events;
+
+    @After
+    public void tearDown() throws Exception {
+        Tooltip.setEvents(null);
+        if (events != null) {
+            events.stop();
+        }
+    }
+
+    @Test
+    public void record_deliversInOrderInBatches() throws Exception {
+        Recorder recorder = new Recorder();
+        events = new TooltipEvents(recorder, 64, 8, 50L);
+        events.start();
+        for (int i = 0; i < 20; i++) {
+            events.record(TooltipEvents.TYPE_SHOWN, "id" + i, TooltipEvents.REASON_OTHER, 0L);
+        }
+        events.stop();
+        awaitEvents(recorder, 20);
+
+        synchronized (recorder) {
+            for (int i = 0; i < 20; i++) {
+                assertEquals("id" + i, recorder.ids.get(i));
+            }
+            assertTrue(recorder.batches >= 3);
+            assertEquals(0, recorder.dropped);
+        }
+    }
+
+    @Test
+    public void record_dropsOldestUnderBackpressure() throws Exception {
+        Recorder recorder = new Recorder();
+        recorder.release = new CountDownLatch(1);
+        events = new TooltipEvents(recorder, 16, 4, 50L);
+        events.start();
+
+        // the first batch blocks the consumer
+        for (int i = 0; i < 4; i++) {
+            events.record(TooltipEvents.TYPE_SHOWN, "first" + i, TooltipEvents.REASON_OTHER, 0L);
+        }
+        awaitEvents(recorder, 4);
+        for (int i = 0; i < 100; i++) {
+            events.record(TooltipEvents.TYPE_CLICKED, "late" + i, TooltipEvents.REASON_OTHER, 0L);
+        }
+        assertEquals(100 - 16, events.getDroppedCount());
+
+        recorder.release.countDown();
+        events.stop();
+        awaitEvents(recorder, 4 + 16);
+        synchronized (recorder) {
+            assertEquals("late" + (100 - 16), recorder.ids.get(4));
+            assertEquals("late99", recorder.ids.get(recorder.ids.size() - 1));
+            assertEquals(100 - 16, recorder.dropped);
+        }
+    }
+
+    @Test
+    public void drain_blocksWhileEmpty() throws Exception {
+        Recorder recorder = new Recorder();
+        events = new TooltipEvents(recorder, 64, 8, 10L);
+        events.start();
+
+        Thread thread = events.getThread();
+        assertNotNull(thread);
+        // many flush intervals without events
+        awaitState(thread, Thread.State.WAITING);
+        Thread.sleep(100L);
+        assertEquals(Thread.State.WAITING, thread.getState());
+        synchronized (recorder) {
+            assertEquals(0, recorder.batches);
+        }
+
+        // a partial batch still goes out after the flush interval
+        events.record(TooltipEvents.TYPE_SHOWN, "single", TooltipEvents.REASON_OTHER, 0L);
+        awaitEvents(recorder, 1);
+        synchronized (recorder) {
+            assertEquals("single", recorder.ids.get(0));
+        }
+    }
+
+    @Test
+    public void drain_interrupted_flushesAndKeepsFlag() throws Exception {
+        Recorder recorder = new Recorder();
+        events = new TooltipEvents(recorder, 64, 8, 60000L);
+        events.start();
+        Thread thread = events.getThread();
+        assertNotNull(thread);
+
+        events.record(TooltipEvents.TYPE_SHOWN, "pending", TooltipEvents.REASON_OTHER, 0L);
+        awaitState(thread, Thread.State.TIMED_WAITING);
+        thread.interrupt();
+        thread.join(5000L);
+
+        assertFalse(thread.isAlive());
+        assertNull(events.getThread());
+        synchronized (recorder) {
+            assertEquals(1, recorder.events.size());
+            assertTrue(recorder.interrupted);
+        }
+    }
+
+    @Test
+    public void tooltip_recordsShownAndDismissReason() throws Exception {
+        Recorder recorder = new Recorder();
+        events = new TooltipEvents(recorder, 64, 2, 50L);
+        events.start();
+        Tooltip.setEvents(events);
+
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        FrameLayout root = new FrameLayout(activity);
+        View anchor = new View(activity);
+        root.addView(anchor, new FrameLayout.LayoutParams(120, 60, Gravity.CENTER));
+        activity.setContentView(root);
+
+        Tooltip tooltip = new Tooltip.Builder(activity)
+                .withAnchor(anchor)
+                .withText("Tracked")
+                .withId("tracked")
+                .build();
+        tooltip.show();
+        tooltip.remove();
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+
+        awaitEvents(recorder, 2);
+        synchronized (recorder) {
+            assertEquals(TooltipEvents.TYPE_SHOWN, recorder.events.get(0)[0]);
+            assertEquals(TooltipEvents.TYPE_DISMISSED, recorder.events.get(1)[0]);
+            assertEquals(TooltipEvents.REASON_REMOVED, recorder.events.get(1)[1]);
+            assertEquals("tracked", recorder.ids.get(1));
+        }
+    }
+
+    private static void awaitState(Thread thread, Thread.State state) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (thread.getState() != state && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+        assertEquals(state, thread.getState());
+    }
+
+    private static void awaitEvents(Recorder recorder, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (System.currentTimeMillis() < deadline) {
+            synchronized (recorder) {
+                if (recorder.events.size() >= count) {
+                    return;
+                }
+            }
+            Thread.sleep(10L);
+        }
+    }
+}
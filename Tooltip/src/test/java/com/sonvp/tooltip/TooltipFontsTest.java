@@ -0,0 +1,107 @@
+package com.sonvp.tooltip;
+
+import android.app.Activity;
+import android.content.Context;
+import android.graphics.Typeface;
+import android.support.annotation.NonNull;
+import android.widget.TextView;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class TooltipFontsTest {
+
+    private static final class CountingLoader implements Tooltip.FontLoader {
+
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch loaded = new CountDownLatch(1);
+
+        @Override
+        public Typeface load(@NonNull Context context) {
+            loads.incrementAndGet();
+            loaded.countDown();
+            return Typeface.MONOSPACE;
+        }
+    }
+
+    private Activity activity;
+    private TextView anchor;
+
+    @Before
+    public void setUp() throws Exception {
+        TooltipFonts.clearCache();
+        anchor = TestAnchors.setUpTextAnchor();
+        activity = (Activity) anchor.getContext();
+    }
+
+    @Test
+    public void withFont_showsFallbackThenSwaps() throws Exception {
+        CountingLoader loader = new CountingLoader();
+        Tooltip tooltip = new Tooltip.Builder(activity)
+                .withAnchor(anchor)
+                .withText("Font")
+                .withTypeface(Typeface.SERIF)
+                .withFont("test:mono", loader)
+                .build();
+        TextView text = (TextView) tooltip.getContentView();
+        assertSame(Typeface.SERIF, text.getTypeface());
+
+        assertTrue(loader.loaded.await(5, TimeUnit.SECONDS));
+        awaitMain("test:mono");
+        assertSame(Typeface.MONOSPACE, text.getPaint().getTypeface());
+        assertSame(Typeface.MONOSPACE, TooltipFonts.getCached("test:mono"));
+    }
+
+    @Test
+    public void withFont_loadedOncePerProcess() throws Exception {
+        CountingLoader loader = new CountingLoader();
+        new Tooltip.Builder(activity).withAnchor(anchor).withText("One").withFont("test:once", loader).build();
+        new Tooltip.Builder(activity).withAnchor(anchor).withText("Two").withFont("test:once", loader).build();
+        assertTrue(loader.loaded.await(5, TimeUnit.SECONDS));
+        awaitMain("test:once");
+
+        Tooltip cached = new Tooltip.Builder(activity).withAnchor(anchor).withText("Three")
+                .withFont("test:once", loader).build();
+        // applied before the tool tip is shown
+        assertSame(Typeface.MONOSPACE, ((TextView) cached.getContentView()).getPaint().getTypeface());
+        assertEquals(1, loader.loads.get());
+    }
+
+    @Test
+    public void withFont_failedLoadKeepsFallback() throws Exception {
+        Tooltip tooltip = new Tooltip.Builder(activity)
+                .withAnchor(anchor)
+                .withText("Missing")
+                .withTypeface(Typeface.SERIF)
+                .withFontAsset("fonts/missing.ttf")
+                .build();
+        Thread.sleep(200L);
+        ShadowLooper.idleMainLooper();
+        assertSame(Typeface.SERIF, ((TextView) tooltip.getContentView()).getTypeface());
+        assertNull(TooltipFonts.getCached("asset:fonts/missing.ttf"));
+    }
+
+    private static void awaitMain(String key) throws InterruptedException {
+        // the font is cached before the UI thread is told
+        for (int i = 0; i < 100 && TooltipFonts.getCached(key) == null; i++) {
+            Thread.sleep(10L);
+        }
+        Thread.sleep(20L);
+        ShadowLooper.idleMainLooper();
+    }
+}
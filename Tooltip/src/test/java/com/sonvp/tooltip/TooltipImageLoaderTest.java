@@ -0,0 +1,209 @@
+package com.sonvp.tooltip;
+
+import android.app.Activity;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.Drawable;
+import android.net.Uri;
+import android.view.Gravity;
+import android.view.View;
+import android.widget.FrameLayout;
+import android.widget.TextView;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowBitmapFactory;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class TooltipImageLoaderTest {
+
+    @Test
+    public void sampleSize_keepsImageAtLeastAsLargeAsTarget() throws Exception {
+        assertEquals(1, TooltipImageLoader.sampleSize(100, 100, 100, 100));
+        assertEquals(1, TooltipImageLoader.sampleSize(100, 100, 200, 200));
+        assertEquals(2, TooltipImageLoader.sampleSize(400, 300, 200, 100));
+        assertEquals(8, TooltipImageLoader.sampleSize(4000, 3000, 480, 320));
+    }
+
+    @Test
+    public void cache_isBoundedInBytes() throws Exception {
+        assertTrue(TooltipImageLoader.getCacheMaxSize() >= 1024 * 1024);
+        assertTrue(TooltipImageLoader.getCacheMaxSize() <= 8 * 1024 * 1024);
+    }
+
+    @Test
+    public void withImage_showsPlaceholderUntilDecoded() throws Exception {
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        TextView anchor = new TextView(activity);
+        activity.setContentView(anchor);
+        Tooltip tooltip = new Tooltip.Builder(activity)
+                .withAnchor(anchor)
+                .withText("Image")
+                .withImage(Uri.parse("content://com.sonvp.tooltip.test/missing.png"))
+                .build();
+
+        TextView text = (TextView) tooltip.getContentView();
+        Drawable top = text.getCompoundDrawables()[1];
+        assertTrue(top instanceof ColorDrawable);
+        assertEquals(top.getBounds().width() * 9 / 16, top.getBounds().height());
+    }
+
+    @Test
+    public void withImageWait_showsWithPlaceholderAfterWait() throws Exception {
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        TextView anchor = new TextView(activity);
+        activity.setContentView(anchor);
+        Tooltip tooltip = new Tooltip.Builder(activity)
+                .withAnchor(anchor)
+                .withText("Image")
+                .withImage(Uri.parse("content://com.sonvp.tooltip.test/slow.png"))
+                .withImageWait(300L)
+                .build();
+
+        tooltip.show();
+        assertFalse(tooltip.isShowing());
+
+        ShadowLooper.idleMainLooper(300L);
+        assertTrue(tooltip.isShowing());
+        tooltip.remove();
+    }
+
+    @Test
+    public void withImageWait_removeBeforeShown_staysRemoved() throws Exception {
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        TextView anchor = new TextView(activity);
+        activity.setContentView(anchor);
+        Tooltip tooltip = new Tooltip.Builder(activity)
+                .withAnchor(anchor)
+                .withText("Image")
+                .withImage(Uri.parse("content://com.sonvp.tooltip.test/removed.png"))
+                .withImageWait(300L)
+                .build();
+
+        tooltip.show();
+        tooltip.remove();
+
+        // the image load completes after the removal
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (tooltip.getPendingImageCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+            ShadowLooper.runUiThreadTasks();
+        }
+        assertEquals(0, tooltip.getPendingImageCount());
+        assertFalse(tooltip.isShowing());
+
+        // and so does the image wait
+        ShadowLooper.idleMainLooper(300L);
+        assertFalse(tooltip.isShowing());
+
+        // shown again on request
+        tooltip.show();
+        assertTrue(tooltip.isShowing());
+        tooltip.remove();
+    }
+
+    @Test
+    public void withImage_sideGravity_decodesToRoomBesideAnchor() throws Exception {
+        TooltipImageLoader.clearCache();
+        ShadowBitmapFactory.provideWidthAndHeightHints(android.R.drawable.ic_menu_gallery, 2000, 1000);
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        View anchor = layOutAnchor(activity);
+
+        Tooltip tooltip = new Tooltip.Builder(activity)
+                .withAnchor(anchor)
+                .withText("Image")
+                .withTooltipGravity(Gravity.RIGHT)
+                .withImage(android.R.drawable.ic_menu_gallery)
+                .build();
+        tooltip.show();
+        awaitImages(tooltip);
+        tooltip.updatePosition();
+
+        TextView text = (TextView) tooltip.getContentView();
+        int room = text.getMaxWidth() - text.getCompoundPaddingLeft() - text.getCompoundPaddingRight();
+        // the room beside the anchor, not the width of the display
+        assertTrue(room < activity.getResources().getDisplayMetrics().widthPixels / 2);
+        Drawable top = text.getCompoundDrawables()[1];
+        assertTrue(top instanceof BitmapDrawable);
+        assertTrue(top.getBounds().width() + " > " + room, top.getBounds().width() <= room);
+        assertTrue(((BitmapDrawable) top).getBitmap().getWidth() <= room);
+        tooltip.remove();
+    }
+
+    @Test
+    public void withImage_decodesOffTheUiThread() throws Exception {
+        TooltipImageLoader.clearCache();
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        View anchor = layOutAnchor(activity);
+        Tooltip tooltip = new Tooltip.Builder(activity)
+                .withAnchor(anchor)
+                .withText("Image")
+                .withImage(android.R.drawable.ic_menu_gallery)
+                .build();
+
+        // both loader threads busy
+        final CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < 2; i++) {
+            TooltipImageLoader.getExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+        }
+        try {
+            tooltip.show();
+            ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+            TextView text = (TextView) tooltip.getContentView();
+            assertEquals(1, tooltip.getPendingImageCount());
+            assertTrue(text.getCompoundDrawables()[1] instanceof ColorDrawable);
+        } finally {
+            release.countDown();
+        }
+
+        awaitImages(tooltip);
+        TextView text = (TextView) tooltip.getContentView();
+        assertTrue(text.getCompoundDrawables()[1] instanceof BitmapDrawable);
+        tooltip.remove();
+    }
+
+    /**
+     * Lays out an anchor on the left half of the display.
+     */
+    private static View layOutAnchor(Activity activity) {
+        int displayWidth = activity.getResources().getDisplayMetrics().widthPixels;
+        int displayHeight = activity.getResources().getDisplayMetrics().heightPixels;
+        FrameLayout root = new FrameLayout(activity);
+        View anchor = new View(activity);
+        root.addView(anchor, new FrameLayout.LayoutParams(displayWidth / 2, 60,
+                Gravity.LEFT | Gravity.CENTER_VERTICAL));
+        activity.setContentView(root);
+        TestAnchors.layOut(root, displayWidth, displayHeight);
+        return anchor;
+    }
+
+    private static void awaitImages(Tooltip tooltip) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (tooltip.getPendingImageCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+            ShadowLooper.runUiThreadTasks();
+        }
+        assertEquals(0, tooltip.getPendingImageCount());
+    }
+}
@@ -0,0 +1,208 @@
+package com.sonvp.tooltip;
+
+import android.app.Activity;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class TooltipListBindingTest {
+
+    private static final int ITEM_COUNT = 200;
+    private static final int ITEM_HEIGHT = 100;
+
+    private static final class Adapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+
+        long idOffset = 1000L;
+
+        Adapter() {
+            setHasStableIds(true);
+        }
+
+        @Override
+        public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+            TextView view = new TextView(parent.getContext());
+            view.setLayoutParams(new RecyclerView.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ITEM_HEIGHT));
+            return new RecyclerView.ViewHolder(view) {
+            };
+        }
+
+        @Override
+        public void onBindViewHolder(RecyclerView.ViewHolder holder, int position) {
+            ((TextView) holder.itemView).setText("Item " + position);
+        }
+
+        @Override
+        public long getItemId(int position) {
+            return idOffset + position;
+        }
+
+        @Override
+        public int getItemCount() {
+            return ITEM_COUNT;
+        }
+    }
+
+    private RecyclerView list;
+    private Adapter adapter;
+
+    @Before
+    public void setUp() throws Exception {
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        list = new RecyclerView(activity);
+        list.setLayoutManager(new LinearLayoutManager(activity));
+        adapter = new Adapter();
+        list.setAdapter(adapter);
+        activity.setContentView(list);
+        layout();
+    }
+
+    @Test
+    public void bind_followsItemAcrossRecycling() throws Exception {
+        View itemView = list.findViewHolderForItemId(1002L).itemView;
+        Tooltip tooltip = new Tooltip.Builder(list.getContext())
+                .withAnchor(itemView)
+                .withText("On item 2")
+                .build();
+        tooltip.show();
+        TooltipListBinding binding = TooltipListBinding.bind(tooltip, list, 1002L);
+        assertTrue(binding.isItemVisible());
+        assertNull(itemView.getTag());
+
+        // scrolled away, the view is recycled for another item
+        list.scrollToPosition(150);
+        layout();
+        assertNull(list.findViewHolderForItemId(1002L));
+        assertFalse(binding.isItemVisible());
+        assertTrue(tooltip.isShowing());
+
+        // back, possibly in another view
+        list.scrollToPosition(0);
+        layout();
+        RecyclerView.ViewHolder holder = list.findViewHolderForItemId(1002L);
+        assertNotNull(holder);
+        assertTrue(binding.isItemVisible());
+        assertSame(holder.itemView, tooltip.getAnchorView());
+        assertNull(holder.itemView.getTag());
+
+        binding.unbind();
+        tooltip.remove();
+    }
+
+    @Test
+    public void bind_followsMovedItem() throws Exception {
+        Tooltip tooltip = showOn(1002L);
+        TooltipListBinding binding = TooltipListBinding.bind(tooltip, list, 1002L);
+        int topBefore = tooltip.getAnchorRect().top;
+
+        // no scroll and no child attached or detached, only a layout
+        adapter.notifyItemMoved(2, 5);
+        layout();
+
+        RecyclerView.ViewHolder holder = list.findViewHolderForItemId(1002L);
+        assertNotNull(holder);
+        assertSame(holder.itemView, tooltip.getAnchorView());
+        assertEquals(topBefore + 3 * ITEM_HEIGHT, tooltip.getAnchorRect().top);
+        assertTrue(binding.isItemVisible());
+
+        binding.unbind();
+        tooltip.remove();
+    }
+
+    @Test
+    public void bind_followsRebindInPlace() throws Exception {
+        Tooltip tooltip = showOn(1002L);
+        TooltipListBinding binding = TooltipListBinding.bind(tooltip, list, 1002L);
+
+        adapter.notifyItemChanged(2);
+        layout();
+
+        RecyclerView.ViewHolder holder = list.findViewHolderForItemId(1002L);
+        assertNotNull(holder);
+        assertSame(holder.itemView, tooltip.getAnchorView());
+        assertTrue(binding.isItemVisible());
+
+        binding.unbind();
+        tooltip.remove();
+    }
+
+    @Test
+    public void dismiss_unbinds() throws Exception {
+        Tooltip tooltip = showOn(1002L);
+        TooltipListBinding binding = TooltipListBinding.bind(tooltip, list, 1002L);
+        assertTrue(binding.isBound());
+
+        tooltip.remove();
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        assertFalse(binding.isBound());
+
+        // a binding replaced by another one ends too
+        Tooltip other = showOn(1003L);
+        TooltipListBinding first = TooltipListBinding.bind(other, list, 1003L);
+        TooltipListBinding second = TooltipListBinding.bind(other, list, 1004L);
+        assertFalse(first.isBound());
+        assertTrue(second.isBound());
+        other.remove();
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        assertFalse(second.isBound());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void bind_requiresStableIds() throws Exception {
+        RecyclerView other = new RecyclerView(list.getContext());
+        other.setAdapter(new RecyclerView.Adapter<RecyclerView.ViewHolder>() {
+            @Override
+            public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+                return null;
+            }
+
+            @Override
+            public void onBindViewHolder(RecyclerView.ViewHolder holder, int position) {
+            }
+
+            @Override
+            public int getItemCount() {
+                return 0;
+            }
+        });
+        Tooltip tooltip = new Tooltip.Builder(list.getContext())
+                .withAnchor(list)
+                .withText("Unbound")
+                .build();
+        TooltipListBinding.bind(tooltip, other, 1L);
+    }
+
+    private Tooltip showOn(long itemId) {
+        Tooltip tooltip = new Tooltip.Builder(list.getContext())
+                .withAnchor(list.findViewHolderForItemId(itemId).itemView)
+                .withText("On item " + itemId)
+                .build();
+        tooltip.show();
+        return tooltip;
+    }
+
+    private void layout() {
+        list.measure(View.MeasureSpec.makeMeasureSpec(1080, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(1000, View.MeasureSpec.EXACTLY));
+        list.layout(0, 0, 1080, 1000);
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+    }
+}
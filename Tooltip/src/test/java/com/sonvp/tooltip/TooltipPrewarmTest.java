@@ -0,0 +1,25 @@
+package com.sonvp.tooltip;
+
+import android.app.Activity;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class TooltipPrewarmTest {
+
+    @Test
+    public void prewarm_isIdempotent() throws Exception {
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        Tooltip.prewarm(activity);
+        Tooltip.prewarmNow(activity);
+        Tooltip.prewarmNow(activity);
+        assertTrue(Tooltip.isPrewarmed());
+    }
+}
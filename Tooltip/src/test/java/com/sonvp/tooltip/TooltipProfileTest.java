@@ -0,0 +1,156 @@
+package com.sonvp.tooltip;
+
+import android.app.Activity;
+import android.content.Intent;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.provider.Settings;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class TooltipProfileTest {
+
+    private Activity activity;
+    private TextView anchor;
+
+    @Before
+    public void setUp() throws Exception {
+        TooltipProfile.clearDetected();
+        anchor = TestAnchors.setUpTextAnchor();
+        activity = (Activity) anchor.getContext();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Tooltip.setProfile(null);
+    }
+
+    @Test
+    public void detect_default() throws Exception {
+        assertSame(TooltipProfile.DEFAULT, TooltipProfile.detect(activity));
+        assertSame(TooltipProfile.DEFAULT, Tooltip.getActiveProfile(activity));
+    }
+
+    @Test
+    public void detect_animationsOff() throws Exception {
+        Settings.Global.putFloat(activity.getContentResolver(), Settings.Global.ANIMATOR_DURATION_SCALE, 0.0F);
+        assertSame(TooltipProfile.REDUCED_MOTION, TooltipProfile.detect(activity));
+    }
+
+    @Test
+    public void activeProfile_detectedOnceUntilDeviceStateChanges() throws Exception {
+        assertSame(TooltipProfile.DEFAULT, Tooltip.getActiveProfile(activity));
+
+        // not detected again on every build
+        Settings.Global.putFloat(activity.getContentResolver(), Settings.Global.ANIMATOR_DURATION_SCALE, 0.0F);
+        assertSame(TooltipProfile.DEFAULT, Tooltip.getActiveProfile(activity));
+
+        activity.getContentResolver().notifyChange(
+                Settings.Global.getUriFor(Settings.Global.ANIMATOR_DURATION_SCALE), null);
+        ShadowLooper.idleMainLooper();
+        assertSame(TooltipProfile.REDUCED_MOTION, Tooltip.getActiveProfile(activity));
+
+        Settings.Global.putFloat(activity.getContentResolver(), Settings.Global.ANIMATOR_DURATION_SCALE, 1.0F);
+        activity.getApplicationContext().sendBroadcast(new Intent(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED));
+        ShadowLooper.idleMainLooper();
+        assertSame(TooltipProfile.DEFAULT, Tooltip.getActiveProfile(activity));
+    }
+
+    @Test
+    public void setProfile_overridesDetection() throws Exception {
+        Tooltip.setProfile(TooltipProfile.LOW_END);
+        assertSame(TooltipProfile.LOW_END, Tooltip.getActiveProfile(activity));
+        Tooltip tooltip = new Tooltip.Builder(activity).withAnchor(anchor).withText("Low end").build();
+        assertSame(TooltipProfile.LOW_END, tooltip.getProfile());
+
+        Tooltip custom = new Tooltip.Builder(activity).withAnchor(anchor).withText("Custom")
+                .withProfile(TooltipProfile.DEFAULT).build();
+        assertSame(TooltipProfile.DEFAULT, custom.getProfile());
+    }
+
+    @Test
+    public void lowEnd_showsInWindowWithoutOverlay() throws Exception {
+        ViewGroup root = (ViewGroup) anchor.getRootView();
+        int childCount = root.getChildCount();
+        Tooltip tooltip = new Tooltip.Builder(activity)
+                .withAnchor(anchor)
+                .withText("In window")
+                .withElevation(8.0F)
+                .withProfile(TooltipProfile.LOW_END)
+                .build();
+        // no overlay added at build time
+        assertEquals(childCount, root.getChildCount());
+
+        tooltip.show();
+        assertTrue(tooltip.isShowing());
+        assertEquals(childCount + 1, root.getChildCount());
+        View layer = root.getChildAt(childCount);
+        assertTrue(layer instanceof TooltipLayer);
+        ShadowLooper.idleMainLooper();
+
+        // no transition: removed at once
+        tooltip.remove();
+        assertFalse(tooltip.isShowing());
+        assertEquals(childCount, root.getChildCount());
+        assertNull(layer.getParent());
+    }
+
+    @Test
+    public void lowEnd_outsideTouchDismisses() throws Exception {
+        ViewGroup root = (ViewGroup) anchor.getRootView();
+        Tooltip tooltip = new Tooltip.Builder(activity)
+                .withAnchor(anchor)
+                .withText("In window")
+                .withProfile(TooltipProfile.LOW_END)
+                .build();
+        tooltip.show();
+        TooltipLayer layer = (TooltipLayer) root.getChildAt(root.getChildCount() - 1);
+        assertNotNull(layer);
+
+        MotionEvent down = MotionEvent.obtain(SystemClock.uptimeMillis(), SystemClock.uptimeMillis(),
+                MotionEvent.ACTION_DOWN, -10.0F, -10.0F, 0);
+        assertFalse(layer.dispatchTouchEvent(down));
+        down.recycle();
+        assertFalse(tooltip.isShowing());
+    }
+
+    @Test
+    @Config(constants = BuildConfig.class, sdk = 21)
+    public void noOverlay_outsideTouchDismissesBeforeMarshmallow() throws Exception {
+        Tooltip tooltip = new Tooltip.Builder(activity)
+                .withAnchor(anchor)
+                .withText("No overlay")
+                .withProfile(new TooltipProfile("no-overlay", false, true, false, false))
+                .build();
+        tooltip.show();
+        ShadowLooper.idleMainLooper();
+        assertTrue(tooltip.isShowing());
+
+        // the root of the popup window, where the window manager sends outside touches
+        View window = tooltip.getContentView().getRootView();
+        MotionEvent outside = MotionEvent.obtain(SystemClock.uptimeMillis(), SystemClock.uptimeMillis(),
+                MotionEvent.ACTION_OUTSIDE, -10.0F, -10.0F, 0);
+        assertTrue(window.dispatchTouchEvent(outside));
+        outside.recycle();
+        assertFalse(tooltip.isShowing());
+    }
+}
@@ -0,0 +1,194 @@
+package com.sonvp.tooltip;
+
+import android.app.Activity;
+import android.graphics.Typeface;
+import android.support.annotation.NonNull;
+import android.text.Spanned;
+import android.text.method.LinkMovementMethod;
+import android.text.style.StyleSpan;
+import android.text.style.TypefaceSpan;
+import android.text.style.URLSpan;
+import android.widget.TextView;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class TooltipRichTextTest {
+
+    @Before
+    public void setUp() throws Exception {
+        TooltipRichText.clearCache();
+    }
+
+    @Test
+    public void parse_marks() throws Exception {
+        Spanned text = (Spanned) TooltipRichText.parseUncached(
+                "Press **Save** or run `git commit`, see [the docs](http://example.com).", 0xFF0000FF);
+        assertEquals("Press Save or run git commit, see the docs.", text.toString());
+
+        StyleSpan[] bold = text.getSpans(0, text.length(), StyleSpan.class);
+        assertEquals(1, bold.length);
+        assertEquals(Typeface.BOLD, bold[0].getStyle());
+        assertEquals("Save", span(text, bold[0]));
+
+        TypefaceSpan[] code = text.getSpans(0, text.length(), TypefaceSpan.class);
+        assertEquals(1, code.length);
+        assertEquals("git commit", span(text, code[0]));
+
+        URLSpan[] links = text.getSpans(0, text.length(), URLSpan.class);
+        assertEquals(1, links.length);
+        assertEquals("http://example.com", links[0].getURL());
+        assertEquals("the docs", span(text, links[0]));
+    }
+
+    @Test
+    public void parse_unclosedMarksStayAsIs() throws Exception {
+        assertEquals("2 ** 3 and `x", TooltipRichText.parseUncached("2 ** 3 and `x", 0).toString());
+    }
+
+    @Test
+    public void parse_html() throws Exception {
+        Spanned text = (Spanned) TooltipRichText.parseUncached("Use <b>bold</b> and <code>code</code>", 0);
+        assertEquals("Use bold and code", text.toString());
+        assertEquals(1, text.getSpans(0, text.length(), StyleSpan.class).length);
+        assertEquals(1, text.getSpans(0, text.length(), TypefaceSpan.class).length);
+    }
+
+    @Test
+    public void stripMarkup() throws Exception {
+        assertEquals("Press Save, see the docs", TooltipRichText.stripMarkup("Press <b>**Save**</b>, see [the docs](http://x)"));
+    }
+
+    @Test
+    public void parse_cachedBySource() throws Exception {
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        CharSequence first = TooltipRichText.parse(activity, "**Help**");
+        assertSame(first, TooltipRichText.parse(activity, "**Help**"));
+        assertSame(first, TooltipRichText.getCached(activity, "**Help**"));
+        assertEquals(1, TooltipRichText.getCacheSize());
+    }
+
+    @Test
+    public void withRichText_prepareUsesParsedText() throws Exception {
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        TextView anchor = new TextView(activity);
+        activity.setContentView(anchor);
+        new Tooltip.Builder(activity)
+                .withAnchor(anchor)
+                .withRichText("**Help**")
+                .prepare();
+        assertNotNull(TooltipRichText.getCached(activity, "**Help**"));
+    }
+
+    @Test
+    public void parse_linkTextEndsAtFirstBracket() throws Exception {
+        Spanned text = (Spanned) TooltipRichText.parseUncached("[a] and [b](http://b)", 0);
+        assertEquals("[a] and b", text.toString());
+        URLSpan[] links = text.getSpans(0, text.length(), URLSpan.class);
+        assertEquals(1, links.length);
+        assertEquals("b", span(text, links[0]));
+
+        text = (Spanned) TooltipRichText.parseUncached("[a](http://a) or [b](http://b)", 0);
+        assertEquals("a or b", text.toString());
+        assertEquals(2, text.getSpans(0, text.length(), URLSpan.class).length);
+    }
+
+    @Test
+    public void load_parsesOnceWhileInFlight() throws Exception {
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        TextView anchor = new TextView(activity);
+        activity.setContentView(anchor);
+        final List<CharSequence> parsed = new ArrayList<CharSequence>();
+        TooltipRichText.Callback callback = new TooltipRichText.Callback() {
+            @Override
+            public void onParsed(@NonNull CharSequence text) {
+                parsed.add(text);
+            }
+        };
+
+        // the prefetch of withRichText(), then build()
+        new Tooltip.Builder(activity)
+                .withAnchor(anchor)
+                .withRichText("**In flight**")
+                .build();
+        TooltipRichText.load(activity, "**In flight**", callback);
+        TooltipRichText.load(activity, "**In flight**", callback);
+        assertEquals(1, TooltipRichText.getPendingCount());
+
+        awaitParsed();
+        assertEquals(2, parsed.size());
+        assertSame(parsed.get(0), parsed.get(1));
+        assertEquals(1, TooltipRichText.getCacheSize());
+    }
+
+    @Test
+    public void withRichText_linksAreClickable() throws Exception {
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        TextView anchor = new TextView(activity);
+        activity.setContentView(anchor);
+        Tooltip tooltip = new Tooltip.Builder(activity)
+                .withAnchor(anchor)
+                .withRichText("See [the docs](http://example.com)")
+                .build();
+        awaitParsed();
+
+        TextView text = (TextView) tooltip.getContentView();
+        assertEquals("See the docs", text.getText().toString());
+        assertTrue(text.getMovementMethod() instanceof LinkMovementMethod);
+        // touches outside of links go to the tool tip
+        assertFalse(text.isClickable());
+
+        // without links, nothing changes
+        Tooltip plain = new Tooltip.Builder(activity)
+                .withAnchor(anchor)
+                .withRichText("**No links**")
+                .build();
+        awaitParsed();
+        assertNull(((TextView) plain.getContentView()).getMovementMethod());
+    }
+
+    @Test
+    public void withRichText_preparedLinksUseATextView() throws Exception {
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        TextView anchor = new TextView(activity);
+        activity.setContentView(anchor);
+        Tooltip tooltip = new Tooltip.Builder(activity)
+                .withAnchor(anchor)
+                .withRichText("Read [the guide](http://example.com/guide)")
+                .prepare()
+                .attach();
+
+        assertFalse(tooltip.getContentView() instanceof StaticTextView);
+        assertTrue(((TextView) tooltip.getContentView()).getMovementMethod() instanceof LinkMovementMethod);
+    }
+
+    private static void awaitParsed() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (TooltipRichText.getPendingCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+            ShadowLooper.runUiThreadTasks();
+        }
+        assertEquals(0, TooltipRichText.getPendingCount());
+    }
+
+    private static String span(Spanned text, Object span) {
+        return text.subSequence(text.getSpanStart(span), text.getSpanEnd(span)).toString();
+    }
+}
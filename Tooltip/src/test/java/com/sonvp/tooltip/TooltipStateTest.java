@@ -0,0 +1,137 @@
+package com.sonvp.tooltip;
+
+import android.app.Activity;
+import android.content.Context;
+import android.graphics.Typeface;
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.view.Gravity;
+import android.view.View;
+import android.widget.FrameLayout;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class TooltipStateTest {
+
+    private static final int ANCHOR_ID = 0x7f0a0001;
+
+    @Before
+    public void setUp() throws Exception {
+        TooltipFonts.clearCache();
+    }
+
+    @Test
+    public void saveAndRestore_acrossRecreation() throws Exception {
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        View anchor = setUpAnchor(activity);
+        Tooltip tooltip = new Tooltip.Builder(activity)
+                .withAnchor(anchor)
+                .withText("Saved")
+                .withTooltipGravity(Gravity.TOP)
+                .withTextColor(0xFF00FF00)
+                .withFontFamily("serif")
+                .withTypefaceStyle(Typeface.BOLD)
+                .withId("saved")
+                .build();
+        tooltip.show();
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+
+        Bundle outState = new Bundle();
+        Tooltip.saveState(activity, outState);
+        tooltip.remove();
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+
+        Activity recreated = Robolectric.buildActivity(Activity.class).create(outState).start().resume().visible().get();
+        View restoredAnchor = setUpAnchor(recreated);
+        Tooltip.restoreState(recreated, outState, null);
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+
+        Tooltip restored = (Tooltip) restoredAnchor.getTag();
+        assertNotNull(restored);
+        assertTrue(restored.isShowing());
+        assertEquals("saved", restored.getId());
+
+        TextView content = (TextView) restored.getContentView();
+        assertEquals("Saved", content.getText().toString());
+        assertEquals(0xFF00FF00, content.getCurrentTextColor());
+        assertEquals(Typeface.BOLD, content.getTypeface().getStyle() & Typeface.BOLD);
+
+        // Gravity.TOP: the bubble above the arrow
+        LinearLayout container = (LinearLayout) content.getParent();
+        assertEquals(LinearLayout.VERTICAL, container.getOrientation());
+        assertSame(content, container.getChildAt(0));
+        restored.remove();
+    }
+
+    @Test
+    public void bundle_keepsFontFamilyAndKey() throws Exception {
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        View anchor = setUpAnchor(activity);
+        Tooltip.Builder builder = new Tooltip.Builder(activity)
+                .withAnchor(anchor)
+                .withText("Font")
+                .withFontFamily("serif")
+                .withFont("test:state", new Tooltip.FontLoader() {
+                    @Override
+                    public Typeface load(@NonNull Context context) {
+                        return Typeface.MONOSPACE;
+                    }
+                });
+        Bundle state = builder.toBundle();
+        assertEquals("serif", state.getString("fontFamily"));
+        assertEquals("test:state", state.getString("fontKey"));
+
+        // loaded by the first tool tip, then found in the process cache by the restored one
+        builder.build();
+        for (int i = 0; i < 100 && TooltipFonts.getCached("test:state") == null; i++) {
+            Thread.sleep(10L);
+        }
+        Tooltip restored = new Tooltip.Builder(activity).fromBundle(state).withAnchor(anchor).build();
+        assertSame(Typeface.MONOSPACE, ((TextView) restored.getContentView()).getTypeface());
+    }
+
+    @Test
+    public void saveState_skipsCustomViews() throws Exception {
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        View anchor = setUpAnchor(activity);
+        Tooltip tooltip = new Tooltip.Builder(activity)
+                .withAnchor(anchor)
+                .withViewTooltip(new View(activity))
+                .build();
+        tooltip.show();
+
+        Bundle outState = new Bundle();
+        Tooltip.saveState(activity, outState);
+        ArrayList<Bundle> states = outState.getParcelableArrayList("com.sonvp.tooltip.Tooltip.STATE_TOOLTIPS");
+        assertNotNull(states);
+        assertTrue(states.isEmpty());
+        tooltip.remove();
+    }
+
+    private static View setUpAnchor(Activity activity) {
+        FrameLayout content = new FrameLayout(activity);
+        TextView anchor = new TextView(activity);
+        anchor.setId(ANCHOR_ID);
+        anchor.setText("Anchor");
+        content.addView(anchor, new FrameLayout.LayoutParams(200, 100, Gravity.CENTER));
+        activity.setContentView(content);
+        return anchor;
+    }
+}
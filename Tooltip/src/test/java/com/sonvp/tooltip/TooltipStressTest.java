@@ -0,0 +1,205 @@
+package com.sonvp.tooltip;
+
+import android.app.Activity;
+import android.graphics.Color;
+import android.view.Gravity;
+import android.view.View;
+import android.widget.FrameLayout;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Headless stress suite: builds, shows, repositions and removes tooltips across every
+ * gravity / arrow gravity / dismiss mode / content combination and compares throughput and
+ * heap growth with {@code stress-baseline.properties}.
+ * <p/>
+ * Switches (forwarded by build.gradle):
+ * <ul>
+ * <li>{@code -Dtooltip.stress.cycles=N} cycles per combination</li>
+ * <li>{@code -Dtooltip.stress.record=path} write the measured numbers as a new baseline</li>
+ * </ul>
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class TooltipStressTest {
+
+    private static final int[] GRAVITIES = {
+            Gravity.TOP, Gravity.BOTTOM, Gravity.LEFT, Gravity.RIGHT, Gravity.START, Gravity.END
+    };
+    private static final int[] ARROW_GRAVITIES = {Gravity.TOP, Gravity.CENTER, Gravity.BOTTOM};
+    private static final int[] ANCHOR_GRAVITIES = {
+            Gravity.TOP | Gravity.LEFT, Gravity.TOP | Gravity.RIGHT, Gravity.CENTER,
+            Gravity.BOTTOM | Gravity.LEFT, Gravity.BOTTOM | Gravity.RIGHT
+    };
+
+    private static final int DEFAULT_CYCLES = 300;
+    private static final int REPOSITIONS_PER_CYCLE = 2;
+    // build + show + repositions + remove
+    private static final int OPS_PER_CYCLE = 3 + REPOSITIONS_PER_CYCLE;
+
+    private Activity activity;
+    private View[] anchors;
+
+    @Before
+    public void setUp() throws Exception {
+        activity = Robolectric.setupActivity(Activity.class);
+        FrameLayout root = new FrameLayout(activity);
+        anchors = new View[ANCHOR_GRAVITIES.length];
+        for (int i = 0; i < anchors.length; i++) {
+            View anchor = new View(activity);
+            root.addView(anchor, new FrameLayout.LayoutParams(120, 60, ANCHOR_GRAVITIES[i]));
+            anchors[i] = anchor;
+        }
+        activity.setContentView(root);
+        root.measure(View.MeasureSpec.makeMeasureSpec(1080, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(1920, View.MeasureSpec.EXACTLY));
+        root.layout(0, 0, 1080, 1920);
+        ShadowLooper.idleMainLooper();
+    }
+
+    @Test
+    public void stress_allCombinations() throws Exception {
+        int cycles = Integer.getInteger("tooltip.stress.cycles", DEFAULT_CYCLES);
+
+        // warm up class loading and resource resolution before sampling the heap
+        runAllCombinations(1);
+        long heapBefore = usedHeap();
+
+        long start = System.nanoTime();
+        long ops = runAllCombinations(cycles);
+        long elapsed = System.nanoTime() - start;
+
+        long heapGrowthKb = (usedHeap() - heapBefore) / 1024;
+        double opsPerSecond = ops * 1e9 / elapsed;
+
+        System.out.println(String.format("TooltipStressTest: %d ops, %.0f ops/sec, heap growth %d KB",
+                ops, opsPerSecond, heapGrowthKb));
+
+        String record = System.getProperty("tooltip.stress.record");
+        if (record != null && record.length() > 0) {
+            writeBaseline(record, opsPerSecond, heapGrowthKb);
+            return;
+        }
+
+        Properties baseline = loadBaseline();
+        double minOpsPerSecond = Double.parseDouble(baseline.getProperty("opsPerSecond"))
+                * (1.0 - Double.parseDouble(baseline.getProperty("throughputTolerance")));
+        long maxHeapGrowthKb = Long.parseLong(baseline.getProperty("heapGrowthKb"))
+                + Long.parseLong(baseline.getProperty("heapToleranceKb"));
+
+        assertTrue("throughput regressed: " + opsPerSecond + " < " + minOpsPerSecond,
+                opsPerSecond >= minOpsPerSecond);
+        assertTrue("heap grew " + heapGrowthKb + " KB > " + maxHeapGrowthKb + " KB",
+                heapGrowthKb <= maxHeapGrowthKb);
+    }
+
+    private long runAllCombinations(int cycles) {
+        long ops = 0;
+        for (int gravity : GRAVITIES) {
+            for (int arrowGravity : ARROW_GRAVITIES) {
+                for (int dismiss = 0; dismiss < 2; dismiss++) {
+                    for (int custom = 0; custom < 2; custom++) {
+                        for (int i = 0; i < cycles; i++) {
+                            View anchor = anchors[i % anchors.length];
+                            runCycle(anchor, gravity, arrowGravity, dismiss == 1, custom == 1);
+                            ops += OPS_PER_CYCLE;
+                        }
+                    }
+                }
+            }
+        }
+        return ops;
+    }
+
+    private void runCycle(View anchor, int gravity, int arrowGravity, boolean dismissOutsideTouch,
+                          boolean customView) {
+        Tooltip.Builder builder = new Tooltip.Builder(activity)
+                .withAnchor(anchor)
+                .withTooltipGravity(gravity)
+                .withArrowGravity(arrowGravity)
+                .withDismissOutsideTouch(dismissOutsideTouch)
+                .withBackgroundColorInt(Color.DKGRAY)
+                .withCornerRadius(8.0F);
+        if (customView) {
+            builder.withViewTooltip(createCustomView());
+        } else {
+            builder.withText("Tooltip 11111 111111 111111 111111 111111 111111 111111");
+        }
+
+        Tooltip tooltip = builder.build();
+        tooltip.show();
+        for (int i = 0; i < REPOSITIONS_PER_CYCLE; i++) {
+            tooltip.onPreDraw();
+        }
+        tooltip.remove();
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+
+        assertFalse("tooltip still showing after remove()", tooltip.isShowing());
+        anchor.setTag(null);
+    }
+
+    private View createCustomView() {
+        LinearLayout layout = new LinearLayout(activity);
+        layout.setOrientation(LinearLayout.VERTICAL);
+        TextView title = new TextView(activity);
+        title.setText("Title");
+        TextView body = new TextView(activity);
+        body.setText("Custom tooltip body");
+        layout.addView(title);
+        layout.addView(body);
+        return layout;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            System.runFinalization();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private Properties loadBaseline() throws IOException {
+        Properties properties = new Properties();
+        InputStream in = TooltipStressTest.class.getResourceAsStream("stress-baseline.properties");
+        assertNotNull("missing stress-baseline.properties", in);
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+        return properties;
+    }
+
+    private static void writeBaseline(String path, double opsPerSecond, long heapGrowthKb) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("opsPerSecond", String.valueOf((long) opsPerSecond));
+        properties.setProperty("heapGrowthKb", String.valueOf(Math.max(0L, heapGrowthKb)));
+        properties.setProperty("throughputTolerance", "0.5");
+        properties.setProperty("heapToleranceKb", "4096");
+        OutputStream out = new FileOutputStream(path);
+        try {
+            properties.store(out, "TooltipStressTest baseline");
+        } finally {
+            out.close();
+        }
+    }
+}
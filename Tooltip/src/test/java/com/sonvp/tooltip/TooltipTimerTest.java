@@ -0,0 +1,155 @@
+package com.sonvp.tooltip;
+
+import android.app.Activity;
+import android.view.Gravity;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class TooltipTimerTest {
+
+    private static final class Counter implements Runnable {
+        int count;
+
+        @Override
+        public void run() {
+            count++;
+        }
+    }
+
+    @Test
+    public void schedule_expiresAfterDelay() throws Exception {
+        TooltipTimer timer = new TooltipTimer();
+        Counter counter = new Counter();
+        TooltipTimer.Entry entry = new TooltipTimer.Entry(counter);
+
+        timer.schedule(entry, 1000L);
+        ShadowLooper.idleMainLooper(900L);
+        assertEquals(0, counter.count);
+        assertTrue(entry.isScheduled());
+
+        ShadowLooper.idleMainLooper(100L + TooltipTimer.TICK_MS);
+        assertEquals(1, counter.count);
+        assertFalse(entry.isScheduled());
+        assertEquals(0, timer.size());
+    }
+
+    @Test
+    public void schedule_longerThanOneTurn() throws Exception {
+        TooltipTimer timer = new TooltipTimer();
+        Counter counter = new Counter();
+        timer.schedule(new TooltipTimer.Entry(counter), 10000L);
+
+        ShadowLooper.idleMainLooper(9000L);
+        assertEquals(0, counter.count);
+        ShadowLooper.idleMainLooper(1000L + TooltipTimer.TICK_MS);
+        assertEquals(1, counter.count);
+    }
+
+    @Test
+    public void cancel_neverExpires() throws Exception {
+        TooltipTimer timer = new TooltipTimer();
+        Counter counter = new Counter();
+        TooltipTimer.Entry entry = new TooltipTimer.Entry(counter);
+
+        timer.schedule(entry, 500L);
+        timer.cancel(entry);
+        ShadowLooper.idleMainLooper(1000L);
+        assertEquals(0, counter.count);
+        assertEquals(0, timer.size());
+    }
+
+    @Test
+    public void pause_keepsTimeLeft() throws Exception {
+        TooltipTimer timer = new TooltipTimer();
+        Counter counter = new Counter();
+        TooltipTimer.Entry entry = new TooltipTimer.Entry(counter);
+
+        timer.schedule(entry, 1000L);
+        ShadowLooper.idleMainLooper(400L);
+        timer.pause(entry);
+        assertTrue(entry.isPaused());
+        ShadowLooper.idleMainLooper(5000L);
+        assertEquals(0, counter.count);
+
+        timer.resume(entry, 0L);
+        ShadowLooper.idleMainLooper(500L);
+        assertEquals(0, counter.count);
+        // rounded up to a tick when paused and again when resumed
+        ShadowLooper.idleMainLooper(100L + 2 * TooltipTimer.TICK_MS);
+        assertEquals(1, counter.count);
+    }
+
+    @Test
+    public void extend_pushesDeadlineBack() throws Exception {
+        TooltipTimer timer = new TooltipTimer();
+        Counter counter = new Counter();
+        TooltipTimer.Entry entry = new TooltipTimer.Entry(counter);
+
+        timer.schedule(entry, 500L);
+        timer.extend(entry, 2000L);
+        ShadowLooper.idleMainLooper(1500L);
+        assertEquals(0, counter.count);
+        ShadowLooper.idleMainLooper(500L + TooltipTimer.TICK_MS);
+        assertEquals(1, counter.count);
+    }
+
+    @Test
+    public void manyEntries_allExpireOnce() throws Exception {
+        TooltipTimer timer = new TooltipTimer();
+        Counter counter = new Counter();
+        for (int i = 0; i < 5000; i++) {
+            timer.schedule(new TooltipTimer.Entry(counter), 100L + (i * 7L) % 6000L);
+        }
+        assertEquals(5000, timer.size());
+
+        ShadowLooper.idleMainLooper(3000L);
+        int expiredEarly = counter.count;
+        assertTrue(expiredEarly > 0 && expiredEarly < 5000);
+
+        ShadowLooper.idleMainLooper(4000L);
+        assertEquals(5000, counter.count);
+        assertEquals(0, timer.size());
+    }
+
+    @Test
+    public void withDuration_dismissesTooltip() throws Exception {
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        FrameLayout root = new FrameLayout(activity);
+        View anchor = new View(activity);
+        root.addView(anchor, new FrameLayout.LayoutParams(120, 60, Gravity.CENTER));
+        activity.setContentView(root);
+
+        Tooltip tooltip = new Tooltip.Builder(activity)
+                .withAnchor(anchor)
+                .withText("Timed")
+                .withDuration(2000L)
+                .build();
+        tooltip.show();
+        assertSame(TooltipTimer.forWindow(anchor), TooltipTimer.forWindow(root));
+        assertEquals(1, TooltipTimer.forWindow(anchor).size());
+
+        tooltip.pauseDuration();
+        ShadowLooper.idleMainLooper(5000L);
+        assertTrue(tooltip.isShowing());
+
+        tooltip.resumeDuration();
+        ShadowLooper.idleMainLooper(3000L);
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        assertFalse(tooltip.isShowing());
+        assertEquals(0, TooltipTimer.forWindow(anchor).size());
+    }
+}
@@ -0,0 +1,154 @@
+package com.sonvp.tooltip;
+
+import android.app.Activity;
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.GradientDrawable;
+import android.view.Gravity;
+import android.view.View;
+import android.widget.FrameLayout;
+import android.widget.ImageView;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Content updates of a showing tool tip: what is re-measured and re-placed, and what is only
+ * drawn again.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class TooltipUpdateTest {
+
+    private Activity activity;
+    private View anchor;
+    private Tooltip tooltip;
+
+    @Before
+    public void setUp() throws Exception {
+        Tooltip.clearPlacementMemo();
+        activity = Robolectric.setupActivity(Activity.class);
+        FrameLayout root = new FrameLayout(activity);
+        anchor = new View(activity);
+        root.addView(anchor, new FrameLayout.LayoutParams(120, 60, Gravity.CENTER));
+        activity.setContentView(root);
+        root.measure(View.MeasureSpec.makeMeasureSpec(1080, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(1920, View.MeasureSpec.EXACTLY));
+        root.layout(0, 0, 1080, 1920);
+
+        tooltip = new Tooltip.Builder(activity)
+                .withAnchor(anchor)
+                .withText("Short")
+                .withTooltipGravity(Gravity.BOTTOM)
+                .withBackgroundColorInt(0xFF000000)
+                .build();
+        tooltip.show();
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        tooltip.updatePosition();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        tooltip.remove();
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+    }
+
+    @Test
+    public void setText_remeasuresAndPlacesAgain() throws Exception {
+        View container = getContainer();
+        int width = container.getMeasuredWidth();
+        int misses = Tooltip.getPlacementMemoMissCount();
+
+        tooltip.setText("A much longer text than before");
+        assertEquals("A much longer text than before", ((TextView) tooltip.getContentView()).getText().toString());
+        assertTrue(container.getMeasuredWidth() > width);
+        assertEquals(misses + 1, Tooltip.getPlacementMemoMissCount());
+    }
+
+    @Test
+    public void setText_sameText_doesNothing() throws Exception {
+        int misses = Tooltip.getPlacementMemoMissCount();
+        int hits = Tooltip.getPlacementMemoHitCount();
+
+        tooltip.setText("Short");
+        assertEquals(misses, Tooltip.getPlacementMemoMissCount());
+        assertEquals(hits, Tooltip.getPlacementMemoHitCount());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void setText_customView_throws() throws Exception {
+        tooltip.setContent(new View(activity));
+        tooltip.setText("Text");
+    }
+
+    @Test
+    public void setContent_replacesAndPlacesAgain() throws Exception {
+        LinearLayout container = getContainer();
+        int index = container.indexOfChild(tooltip.getContentView());
+        View content = new View(activity);
+        content.setMinimumWidth(600);
+        content.setMinimumHeight(300);
+
+        tooltip.setContent(content);
+        assertSame(content, tooltip.getContentView());
+        assertSame(content, container.getChildAt(index));
+        assertEquals(600, content.getMeasuredWidth());
+        assertTrue(container.getMeasuredWidth() >= 600);
+        assertTrue(container.getMeasuredHeight() >= 300);
+        // the new content keeps the bubble background
+        assertEquals(0xFF000000, ((ColorDrawable) content.getBackground()).getColor());
+    }
+
+    @Test
+    public void setBackgroundColor_updatesBubbleAndArrow() throws Exception {
+        int width = getContainer().getMeasuredWidth();
+
+        tooltip.setBackgroundColor(0xFF3F51B5);
+        assertEquals(0xFF3F51B5, ((ColorDrawable) tooltip.getContentView().getBackground()).getColor());
+        assertEquals(0xFF3F51B5, getArrowDrawable().getColor());
+        assertEquals(width, getContainer().getMeasuredWidth());
+    }
+
+    @Test
+    public void setBackgroundColor_roundedBubble() throws Exception {
+        tooltip.remove();
+        tooltip = new Tooltip.Builder(activity)
+                .withAnchor(anchor)
+                .withText("Rounded")
+                .withCornerRadius(12.0F)
+                .build();
+        tooltip.show();
+        Object background = tooltip.getContentView().getBackground();
+
+        tooltip.setBackgroundColor(0xFFE91E63);
+        // the same drawable, recolored
+        assertSame(background, tooltip.getContentView().getBackground());
+        assertTrue(background instanceof GradientDrawable);
+        assertEquals(0xFFE91E63, getArrowDrawable().getColor());
+    }
+
+    private LinearLayout getContainer() {
+        return (LinearLayout) tooltip.getContentView().getParent();
+    }
+
+    private ArrowDrawable getArrowDrawable() {
+        LinearLayout container = getContainer();
+        for (int i = 0; i < container.getChildCount(); i++) {
+            if (container.getChildAt(i) instanceof ImageView) {
+                return (ArrowDrawable) ((ImageView) container.getChildAt(i)).getDrawable();
+            }
+        }
+        throw new AssertionError("no arrow");
+    }
+}
@@ -20,7 +20,13 @@ public class MainActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         super.setContentView(R.layout.activity_main);
         initView();
+        Tooltip.restoreState(this, savedInstanceState, null);
+    }
 
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        Tooltip.saveState(this, outState);
     }
 
     private void initView() {
@@ -68,15 +74,15 @@ public class MainActivity extends AppCompatActivity {
         showToolTipView(anchorView, gravity, text, backgroundColor, 0L, theme);
     }
 
-    private void showToolTipView(final View anchorView, int gravity, CharSequence text, int backgroundColor, long delay, boolean theme) {
+    private void showToolTipView(final View anchorView, int gravity, CharSequence text, int backgroundColor, long readyTimeout, boolean theme) {
         if (anchorView.getTag() != null) {
             ((Tooltip) anchorView.getTag()).remove();
             anchorView.setTag(null);
             return;
         }
         Tooltip tooltip = createToolTipView(text, anchorView, gravity, theme);
-        if (delay > 0L) {
-            tooltip.showDelayed(100);
+        if (readyTimeout > 0L) {
+            tooltip.showWhenReady(readyTimeout, null);
         } else {
             tooltip.show();
         }